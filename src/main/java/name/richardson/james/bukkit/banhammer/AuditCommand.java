@@ -22,7 +22,6 @@ import java.util.*;
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
 import name.richardson.james.bukkit.utilities.command.argument.AllOptionArgument;
 import name.richardson.james.bukkit.utilities.command.argument.Argument;
 import name.richardson.james.bukkit.utilities.command.argument.BooleanMarshaller;
@@ -30,15 +29,16 @@ import name.richardson.james.bukkit.utilities.command.argument.PlayerNamePositio
 import name.richardson.james.bukkit.utilities.formatters.ChoiceFormatter;
 import name.richardson.james.bukkit.utilities.localisation.BukkitUtilities;
 
-import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.BanStatistics;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 import name.richardson.james.bukkit.banhammer.utilities.formatters.BanCountChoiceFormatter;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
 
-public final class AuditCommand extends AbstractCommand {
+public final class AuditCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.audit";
 	public static final String PERMISSION_SELF = "banhammer.audit.self";
@@ -50,8 +50,8 @@ public final class AuditCommand extends AbstractCommand {
 	private final Argument playerName;
 	private final PlayerRecordManager playerRecordManager;
 
-	public AuditCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager) {
-		super(AUDIT_COMMAND_NAME, AUDIT_COMMAND_DESC);
+	public AuditCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, DatabaseExecutor databaseExecutor) {
+		super(AUDIT_COMMAND_NAME, AUDIT_COMMAND_DESC, databaseExecutor);
 		this.playerRecordManager = playerRecordManager;
 		this.banRecordManager = banRecordManager;
 		this.playerName = PlayerNamePositionalArgument.getInstance(playerRecordManager, 0, false, PlayerRecordManager.PlayerStatus.CREATOR);
@@ -62,11 +62,6 @@ public final class AuditCommand extends AbstractCommand {
 		this.choiceFormatter.setMessage(AUDIT_COMMAND_HEADER.asHeaderMessage());
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	public boolean isAuthorised(Permissible permissible) {
 		return permissible.hasPermission(PERMISSION_ALL) || permissible.hasPermission(PERMISSION_OTHERS) || permissible.hasPermission(PERMISSION_SELF);
@@ -74,33 +69,56 @@ public final class AuditCommand extends AbstractCommand {
 
 	@Override
 	protected void execute() {
-		String player = (this.playerName.getString() == null) ? getContext().getCommandSender().getName() : this.playerName.getString();
-		Collection<String> playerNames = new ArrayList<String>(this.playerName.getStrings());
+		final CommandSender sender = getContext().getCommandSender();
+		final String player = (this.playerName.getString() == null) ? sender.getName() : this.playerName.getString();
+		final Collection<String> playerNames = new ArrayList<String>(this.playerName.getStrings());
 		if (playerNames.isEmpty()) playerNames.add(player);
-		List<String> messages = new ArrayList<String>();
-		for (String playerName : playerNames) {
-			if (!hasPermission(getContext().getCommandSender(), player)) {
-				messages.add(BukkitUtilities.INVOKER_NO_PERMISSION.asErrorMessage());
-			} else {
-				AuditSummary auditSummary = null;
-				if (all.isSet()) {
-					auditSummary = new AuditSummary(banRecordManager.list(), banRecordManager.count());
-					playerName = "Everyone";
-				} else if (playerRecordManager.exists(player)) {
-					PlayerRecord record = playerRecordManager.find(player);
-					auditSummary = new AuditSummary(record.getCreatedBans(), banRecordManager.count());
-				}
-				if (auditSummary != null) {
-					choiceFormatter.setArguments(auditSummary.getTotalBanCount(), playerName, auditSummary.getTotalBanCountPercentage());
-					messages.add(choiceFormatter.getMessage());
-					messages.addAll(auditSummary.getMessages());
-				} else {
-					messages.add(PLAYER_HAS_NEVER_MADE_ANY_BANS.asInfoMessage(playerName));
+		final boolean all = this.all.isSet();
+		if (!hasPermission(sender, player)) {
+			sender.sendMessage(BukkitUtilities.INVOKER_NO_PERMISSION.asErrorMessage());
+			return;
+		}
+		submit(new Task<Map<String, AuditSummary>>(sender) {
+			@Override
+			public Map<String, AuditSummary> call() {
+				return audit(playerNames, all);
+			}
+
+			@Override
+			public void complete(Map<String, AuditSummary> summaries) {
+				List<String> messages = new ArrayList<String>();
+				for (Map.Entry<String, AuditSummary> entry : summaries.entrySet()) {
+					AuditSummary auditSummary = entry.getValue();
+					if (auditSummary != null) {
+						choiceFormatter.setArguments(auditSummary.getTotalBanCount(), entry.getKey(), auditSummary.getTotalBanCountPercentage());
+						messages.add(choiceFormatter.getMessage());
+						messages.addAll(auditSummary.getMessages());
+					} else {
+						messages.add(PLAYER_HAS_NEVER_MADE_ANY_BANS.asInfoMessage(entry.getKey()));
+					}
 				}
-				if (all.isSet()) break;
+				getSender().sendMessage(messages.toArray(new String[messages.size()]));
 			}
+		});
+	}
+
+	private Map<String, AuditSummary> audit(Collection<String> playerNames, boolean all) {
+		Map<String, AuditSummary> summaries = new LinkedHashMap<String, AuditSummary>();
+		// every summary is compared against the same total so it is only read once
+		BanStatistics statistics = banRecordManager.getStatistics();
+		if (all) {
+			summaries.put("Everyone", new AuditSummary(statistics, statistics.getTotalCount()));
+			return summaries;
+		}
+		for (String playerName : playerNames) {
+			AuditSummary auditSummary = null;
+			PlayerRecord record = playerRecordManager.find(playerName);
+			if (record != null) {
+				auditSummary = new AuditSummary(banRecordManager.getStatistics(record), statistics.getTotalCount());
+			}
+			summaries.put(playerName, auditSummary);
 		}
-		getContext().getCommandSender().sendMessage(messages.toArray(new String[messages.size()]));
+		return summaries;
 	}
 
 	private boolean hasPermission(final CommandSender sender, String targetName) {
@@ -110,26 +128,20 @@ public final class AuditCommand extends AbstractCommand {
 
 	public final class AuditSummary {
 
-		private final List<BanRecord> bans;
-		private int expiredBans;
-		private int normalBans;
-		private int pardonedBans;
-		private int permanentBans;
-		private int temporaryBans;
-		private int total;
+		private final BanStatistics statistics;
+		private final int total;
 
-		private AuditSummary(List<BanRecord> bans, int total) {
-			this.bans = bans;
+		private AuditSummary(BanStatistics statistics, int total) {
+			this.statistics = statistics;
 			this.total = total;
-			this.update();
 		}
 
 		public int getExpiredBanCount() {
-			return expiredBans;
+			return statistics.getExpiredCount();
 		}
 
 		public float getExpiredBanCountPercentage() {
-			return (float) expiredBans / this.bans.size();
+			return (float) statistics.getExpiredCount() / statistics.getTotalCount();
 		}
 
 		public List<String> getMessages() {
@@ -145,67 +157,43 @@ public final class AuditCommand extends AbstractCommand {
 		}
 
 		public int getNormalBanCount() {
-			return normalBans;
+			return statistics.getNormalCount();
 		}
 
 		public float getNormalBanCountPercentage() {
-			return (float) normalBans / this.bans.size();
+			return (float) statistics.getNormalCount() / statistics.getTotalCount();
 		}
 
 		public int getPardonedBanCount() {
-			return pardonedBans;
+			return statistics.getPardonedCount();
 		}
 
 		public float getPardonedBanCountPercentage() {
-			return (float) pardonedBans / this.bans.size();
+			return (float) statistics.getPardonedCount() / statistics.getTotalCount();
 		}
 
 		public int getPermanentBanCount() {
-			return permanentBans;
+			return statistics.getPermanentCount();
 		}
 
 		public float getPermanentBanCountPercentage() {
-			return (float) permanentBans / this.bans.size();
+			return (float) statistics.getPermanentCount() / statistics.getTotalCount();
 		}
 
 		public int getTemporaryBanCount() {
-			return temporaryBans;
+			return statistics.getTemporaryCount();
 		}
 
 		public float getTemporaryBanCountPercentage() {
-			return (float) temporaryBans / this.bans.size();
+			return (float) statistics.getTemporaryCount() / statistics.getTotalCount();
 		}
 
 		public int getTotalBanCount() {
-			return this.bans.size();
+			return statistics.getTotalCount();
 		}
 
 		public float getTotalBanCountPercentage() {
-			return (float) this.bans.size() / total;
-		}
-
-		private void update() {
-			for (BanRecord record : bans) {
-				switch (record.getType()) {
-					case PERMANENT:
-						permanentBans++;
-						break;
-					case TEMPORARY:
-						temporaryBans++;
-						break;
-				}
-				switch (record.getState()) {
-					case NORMAL:
-						normalBans++;
-						break;
-					case PARDONED:
-						pardonedBans++;
-						break;
-					case EXPIRED:
-						expiredBans++;
-						break;
-				}
-			}
+			return (float) statistics.getTotalCount() / total;
 		}
 
 	}
@@ -24,20 +24,23 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 import org.bukkit.plugin.PluginManager;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
 import name.richardson.james.bukkit.utilities.command.argument.*;
 
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
 import name.richardson.james.bukkit.banhammer.ban.event.BanHammerPlayerBannedEvent;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
 import static name.richardson.james.bukkit.utilities.localisation.BukkitUtilities.INVOKER_NO_PERMISSION;
 
-public class BanCommand extends AbstractCommand {
+public class BanCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.ban";
 	public static final String PERMISSION_PERMANENT = "banhammer.ban.permanent";
+	private final BanRecordManager banRecordManager;
 	private final Set<String> immunePlayers;
 	private final Map<String, Long> limits;
 	private final Argument player;
@@ -47,8 +50,9 @@ public class BanCommand extends AbstractCommand {
 	private final SilentSwitchArgument silent;
 	private final TimeMarshaller time;
 
-	public BanCommand(Server server, PluginManager pluginManager, PlayerRecordManager playerRecordManager, Map<String, Long> limits, Set<String> immunePlayers) {
-		super(BANCOMMAND_NAME, BANCOMMAND_DESC);
+	public BanCommand(Server server, PluginManager pluginManager, BanRecordManager banRecordManager, PlayerRecordManager playerRecordManager, Map<String, Long> limits, Set<String> immunePlayers, DatabaseExecutor databaseExecutor) {
+		super(BANCOMMAND_NAME, BANCOMMAND_DESC, databaseExecutor);
+		this.banRecordManager = banRecordManager;
 		this.playerRecordManager = playerRecordManager;
 		this.limits = limits;
 		this.immunePlayers = immunePlayers;
@@ -65,35 +69,37 @@ public class BanCommand extends AbstractCommand {
 
 	@Override
 	public void execute() {
-		CommandSender sender = getContext().getCommandSender();
-		List<String> messages = new ArrayList<String>();
-		List<BanRecord> records = new ArrayList<BanRecord>();
-		Collection<String> players = player.getStrings();
-		boolean silent = this.silent.isSet();
-		long time = this.time.getDuration();
+		final CommandSender sender = getContext().getCommandSender();
+		final List<String> messages = new ArrayList<String>();
+		final Map<String, String> targets = new LinkedHashMap<String, String>();
+		final Collection<String> players = player.getStrings();
+		final boolean silent = this.silent.isSet();
+		final long time = this.time.getDuration();
+		final String reason = this.reason.getString();
 		for (String player : players) {
 			if (!hasPermission(sender, player)) {
 				messages.add(INVOKER_NO_PERMISSION.asErrorMessage());
-			} else if (playerRecordManager.exists(player) && playerRecordManager.find(player).getActiveBan() != null) {
-				messages.add(PLAYER_IS_ALREADY_BANNED.asWarningMessage(player));
-			} else {
-				PlayerRecordManager.BannedPlayerBuilder bannedPlayerBuilder = playerRecordManager.getBannedPlayerBuilder();
-				bannedPlayerBuilder.setPlayer(player);
-				bannedPlayerBuilder.setCreator(sender.getName());
-				bannedPlayerBuilder.setReason(reason.getString());
-				if (time > 0) bannedPlayerBuilder.setExpiryTime(time);
-				bannedPlayerBuilder.save();
-				if (silent) messages.add(PLAYER_BANNED.asInfoMessage(player));
-				BanHammerPlayerBannedEvent event = new BanHammerPlayerBannedEvent(bannedPlayerBuilder.getRecord(), silent);
-				pluginManager.callEvent(event);
+			} else if (!targets.containsKey(PlayerRecord.normalise(player))) {
+				targets.put(PlayerRecord.normalise(player), player);
 			}
 		}
-		sender.sendMessage(messages.toArray(new String[messages.size()]));
-	}
+		submit(new Task<List<BanRecord>>(sender) {
+			@Override
+			public List<BanRecord> call() {
+				return ban(sender.getName(), targets, reason, time, messages);
+			}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
+			@Override
+			public void complete(List<BanRecord> records) {
+				// events are only fired once the bans have been committed
+				for (BanRecord record : records) {
+					if (silent) messages.add(PLAYER_BANNED.asInfoMessage(record.getPlayer().getName()));
+					BanHammerPlayerBannedEvent event = new BanHammerPlayerBannedEvent(record, silent);
+					pluginManager.callEvent(event);
+				}
+				sender.sendMessage(messages.toArray(new String[messages.size()]));
+			}
+		});
 	}
 
 	@Override
@@ -107,6 +113,32 @@ public class BanCommand extends AbstractCommand {
 		return false;
 	}
 
+	private List<BanRecord> ban(String creatorName, Map<String, String> targets, String reason, long time, List<String> messages) {
+		List<BanRecord> records = new ArrayList<BanRecord>();
+		if (targets.isEmpty()) return records;
+		// resolve every player at once so the bans can be saved together in one transaction
+		Map<String, PlayerRecord> playerRecords = playerRecordManager.create(targets.values());
+		PlayerRecord creator = playerRecordManager.createCreator(creatorName);
+		for (Map.Entry<String, String> target : targets.entrySet()) {
+			PlayerRecordManager.BannedPlayerBuilder bannedPlayerBuilder = playerRecordManager.getBannedPlayerBuilder();
+			bannedPlayerBuilder.setPlayer(playerRecords.get(target.getKey()));
+			bannedPlayerBuilder.setCreator(creator);
+			bannedPlayerBuilder.setReason(reason);
+			if (time > 0) bannedPlayerBuilder.setExpiryTime(time);
+			records.add(bannedPlayerBuilder.getRecord());
+		}
+		// players who are already banned are found by the save in one query and their bans are not saved
+		final List<BanRecord> saved = banRecordManager.save(records);
+		final Set<String> banned = new HashSet<String>(saved.size());
+		for (BanRecord record : saved) {
+			banned.add(record.getPlayer().getNormalisedName());
+		}
+		for (Map.Entry<String, String> target : targets.entrySet()) {
+			if (!banned.contains(target.getKey())) messages.add(PLAYER_IS_ALREADY_BANNED.asWarningMessage(target.getValue()));
+		}
+		return saved;
+	}
+
 	private boolean hasPermission(final CommandSender sender, String playerName) {
 		boolean immunePlayerTargeted = this.immunePlayers.contains(playerName);
 		if (sender.hasPermission(PERMISSION_ALL)) return true;
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanExpiryTask.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.event.BanHammerPlayerExpiredEvent;
+
+/**
+ * Marks temporary bans as expired once they have expired.
+ * <p/>
+ * Expired bans are taken from the expiry queue of the active ban index and saved in batches. This task is
+ * intended to be run asynchronously; a {@link BanHammerPlayerExpiredEvent} is fired on the main thread for each
+ * ban once it has been saved. Bans which can not be saved are returned to the queue and retried.
+ */
+public class BanExpiryTask implements Runnable {
+
+	/** The maximum number of bans saved at once. */
+	public static final int BATCH_SIZE = 100;
+
+	private final ActiveBanIndex activeBanIndex;
+	private final BanRecordManager banRecordManager;
+	private final Logger logger = PluginLoggerFactory.getLogger(BanExpiryTask.class);
+	private final Plugin plugin;
+	private final PluginManager pluginManager;
+	private final BukkitScheduler scheduler;
+
+	public BanExpiryTask(Plugin plugin, BukkitScheduler scheduler, PluginManager pluginManager, ActiveBanIndex activeBanIndex, BanRecordManager banRecordManager) {
+		this.plugin = plugin;
+		this.scheduler = scheduler;
+		this.pluginManager = pluginManager;
+		this.activeBanIndex = activeBanIndex;
+		this.banRecordManager = banRecordManager;
+	}
+
+	@Override
+	public void run() {
+		List<BanRecord> records;
+		do {
+			records = activeBanIndex.expire(BATCH_SIZE);
+			if (records.isEmpty()) return;
+			try {
+				banRecordManager.expire(records);
+			} catch (RuntimeException e) {
+				// the bans have left the queue, so put them back to be retried the next time this runs
+				logger.log(Level.WARNING, "Unable to mark bans as expired: {0}", e.getMessage());
+				for (BanRecord record : records) activeBanIndex.getBanExpiryQueue().schedule(record);
+				return;
+			}
+			logger.log(Level.FINE, "Marked {0} bans as expired.", records.size());
+			this.fireEvents(records);
+		} while (records.size() == BATCH_SIZE);
+	}
+
+	private void fireEvents(final List<BanRecord> records) {
+		scheduler.runTask(plugin, new Runnable() {
+			@Override
+			public void run() {
+				for (BanRecord record : records) {
+					pluginManager.callEvent(new BanHammerPlayerExpiredEvent(record, true));
+				}
+			}
+		});
+	}
+
+}
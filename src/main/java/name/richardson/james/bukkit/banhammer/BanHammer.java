@@ -17,10 +17,12 @@
  ******************************************************************************/
 package name.richardson.james.bukkit.banhammer;
 
+import javax.persistence.PersistenceException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,8 +35,6 @@ import com.avaje.ebean.config.ServerConfig;
 import name.richardson.james.bukkit.utilities.command.*;
 import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
 import name.richardson.james.bukkit.utilities.logging.PrefixedLogger;
-import name.richardson.james.bukkit.utilities.persistence.configuration.DatabaseConfiguration;
-import name.richardson.james.bukkit.utilities.persistence.configuration.SimpleDatabaseConfiguration;
 import name.richardson.james.bukkit.utilities.persistence.database.DatabaseLoader;
 import name.richardson.james.bukkit.utilities.persistence.database.DatabaseLoaderFactory;
 import name.richardson.james.bukkit.utilities.updater.BukkitDevPluginUpdater;
@@ -42,13 +42,37 @@ import name.richardson.james.bukkit.utilities.updater.PluginUpdater;
 
 import name.richardson.james.bukkit.alias.Alias;
 import name.richardson.james.bukkit.alias.persistence.PlayerNameRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.AliasClusterIndex;
+import name.richardson.james.bukkit.banhammer.ban.BanPager;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.BanStore;
+import name.richardson.james.bukkit.banhammer.ban.BanWriteBehindQueue;
+import name.richardson.james.bukkit.banhammer.ban.EbeanBanStore;
+import name.richardson.james.bukkit.banhammer.ban.MemoryBanStore;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
 import name.richardson.james.bukkit.banhammer.ban.event.AliasBannedPlayerListener;
+import name.richardson.james.bukkit.banhammer.ban.event.BanCacheListener;
+import name.richardson.james.bukkit.banhammer.ban.event.LoginCheckGuard;
 import name.richardson.james.bukkit.banhammer.ban.event.NormalBannedPlayerListener;
 import name.richardson.james.bukkit.banhammer.ban.event.PlayerNotifier;
+import name.richardson.james.bukkit.banhammer.persistence.BanCreatedAtIndexMigration;
+import name.richardson.james.bukkit.banhammer.persistence.BanStateIndexMigration;
+import name.richardson.james.bukkit.banhammer.persistence.BanStatisticsMigration;
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseDialect;
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseWriter;
+import name.richardson.james.bukkit.banhammer.persistence.DirectDatabaseWriter;
+import name.richardson.james.bukkit.banhammer.persistence.GroupCommitWriter;
+import name.richardson.james.bukkit.banhammer.persistence.Migration;
+import name.richardson.james.bukkit.banhammer.persistence.MigrationRunner;
+import name.richardson.james.bukkit.banhammer.persistence.NormalisedPlayerNameMigration;
+import name.richardson.james.bukkit.banhammer.persistence.SqliteJournal;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.CircuitBreaker;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.MainThreadExecutor;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.VirtualThreads;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.PLUGIN_UNABLE_TO_HOOK_ALIAS;
 
@@ -56,17 +80,43 @@ public final class BanHammer extends JavaPlugin {
 
 	public static final String NOTIFY_PERMISSION_NAME = "banhammer.notify";
 	public static final int PROJECT_ID = 31269;
+	/** How often the banned player filter is rebuilt, in server ticks. */
+	public static final long BANNED_PLAYER_FILTER_REBUILD_INTERVAL = 72000;
+	/** How often the alias clusters are rebuilt, in server ticks. */
+	public static final long ALIAS_CLUSTER_REBUILD_INTERVAL = 72000;
+	/** How often queued bans are saved, in server ticks. */
+	public static final long BAN_WRITE_BEHIND_INTERVAL = 20;
+	/** How often expired bans are checked for, in server ticks. */
+	public static final long BAN_EXPIRY_INTERVAL = 20;
+	/** How often the ban statistics are recomputed to correct any drift, in server ticks. */
+	public static final long BAN_STATISTICS_REPAIR_INTERVAL = 1728000;
+	/** How often a snapshot of the bans is saved when they are stored in memory, in server ticks. */
+	public static final long BAN_SNAPSHOT_INTERVAL = 6000;
 
+	private static final String BAN_SNAPSHOT_NAME = "bans.yml";
 	private static final String CONFIG_NAME = "config.yml";
 	private static final String DATABASE_CONFIG_NAME = "database.yml";
 
 	private final Logger logger = PluginLoggerFactory.getLogger(BanHammer.class);
 
+	private ActiveBanIndex activeBanIndex;
+	private BanWriteBehindQueue banWriteBehindQueue;
 	private BanRecordManager banRecordManager;
+	private BanStore.Type banStoreType;
 	private PluginConfiguration configuration;
+	private int connectionPoolSize;
 	private EbeanServer database;
+	private DatabaseDialect databaseDialect;
+	private DatabaseWriter databaseWriter;
+	private DatabaseExecutor databaseExecutor;
+	private LoginCheckGuard loginCheckGuard;
+	private MemoryBanStore memoryBanStore;
 	private PlayerRecordManager playerRecordManager;
 
+	public ActiveBanIndex getActiveBanIndex() {
+		return activeBanIndex;
+	}
+
 	public BanRecordManager getBanRecordManager() {
 		return banRecordManager;
 	}
@@ -79,6 +129,15 @@ public final class BanHammer extends JavaPlugin {
 		return database;
 	}
 
+	/**
+	 * Get the executor which runs the asynchronous methods of the record managers.
+	 * <p/>
+	 * Use {@link DatabaseExecutor#onMainThread} to handle their results on the main server thread.
+	 */
+	public DatabaseExecutor getDatabaseExecutor() {
+		return databaseExecutor;
+	}
+
 	@Override
 	public List<Class<?>> getDatabaseClasses() {
 		final List<Class<?>> classes = new LinkedList<Class<?>>();
@@ -87,6 +146,18 @@ public final class BanHammer extends JavaPlugin {
 		return classes;
 	}
 
+	/**
+	 * Get every migration which may need to be applied to the database, oldest first.
+	 */
+	private static List<Migration> getMigrations() {
+		final List<Migration> migrations = new ArrayList<Migration>();
+		migrations.add(new NormalisedPlayerNameMigration());
+		migrations.add(new BanStateIndexMigration());
+		migrations.add(new BanStatisticsMigration());
+		migrations.add(new BanCreatedAtIndexMigration());
+		return migrations;
+	}
+
 	public PlayerRecordManager getPlayerRecordManager() {
 		return playerRecordManager;
 	}
@@ -95,12 +166,26 @@ public final class BanHammer extends JavaPlugin {
 		this.playerRecordManager = playerRecordManager;
 	}
 
+	@Override
+	public void onDisable() {
+		if (this.loginCheckGuard != null) this.loginCheckGuard.shutdown();
+		if (this.banWriteBehindQueue != null) this.banWriteBehindQueue.drain();
+		if (this.databaseExecutor != null) {
+			this.databaseExecutor.shutdown();
+			// the scheduler has already stopped running callbacks, so complete the tasks which have just finished
+			this.databaseExecutor.getMainThreadExecutor().drain();
+		}
+		if (this.databaseWriter != null) this.databaseWriter.shutdown();
+		if (this.memoryBanStore != null) this.saveBanSnapshot();
+	}
+
 	@Override
 	public void onEnable() {
 		try {
 			this.loadConfiguration();
 			this.loadDatabase();
 			this.loadManagers();
+			this.scheduleTasks();
 			this.registerCommands();
 			this.registerListeners();
 			this.setupMetrics();
@@ -128,7 +213,23 @@ public final class BanHammer extends JavaPlugin {
 		} else {
 			logger.log(Level.FINE, "Using {0}.", plugin.getDescription().getFullName());
 			PlayerNameRecordManager playerNameRecordManager = plugin.getPlayerNameRecordManager();
-			new AliasBannedPlayerListener(this, this.getServer().getPluginManager(), this.getPlayerRecordManager(), playerNameRecordManager);
+			AliasClusterIndex aliasClusterIndex = new AliasClusterIndex(this.getActiveBanIndex());
+			this.banWriteBehindQueue = new BanWriteBehindQueue(this.getPlayerRecordManager(), this.getBanRecordManager(), this.getActiveBanIndex());
+			final AliasBannedPlayerListener listener = new AliasBannedPlayerListener(this, this.getServer().getPluginManager(), this.getPlayerRecordManager(), playerNameRecordManager, this.getActiveBanIndex(), aliasClusterIndex, this.banWriteBehindQueue, this.loginCheckGuard);
+			final Runnable rebuildClusters = new Runnable() {
+				@Override
+				public void run() {
+					listener.rebuildAliasClusters();
+				}
+			};
+			this.getServer().getScheduler().runTaskTimerAsynchronously(this, rebuildClusters, 0, ALIAS_CLUSTER_REBUILD_INTERVAL);
+			final Runnable saveBans = new Runnable() {
+				@Override
+				public void run() {
+					banWriteBehindQueue.flush();
+				}
+			};
+			this.getServer().getScheduler().runTaskTimerAsynchronously(this, saveBans, BAN_WRITE_BEHIND_INTERVAL, BAN_WRITE_BEHIND_INTERVAL);
 		}
 	}
 
@@ -139,7 +240,6 @@ public final class BanHammer extends JavaPlugin {
 		final InputStream defaults = this.getResource(CONFIG_NAME);
 		this.configuration = new PluginConfiguration(file, defaults);
 		this.logger.setLevel(configuration.getLogLevel());
-		if (configuration.isAliasEnabled()) hookAlias();
 	}
 
 	private void loadDatabase()
@@ -150,45 +250,92 @@ public final class BanHammer extends JavaPlugin {
 		serverConfig.setName(this.getName());
 		final File file = new File(this.getDataFolder().getPath() + File.separatorChar + DATABASE_CONFIG_NAME);
 		final InputStream defaults = this.getResource(DATABASE_CONFIG_NAME);
-		final DatabaseConfiguration configuration = new SimpleDatabaseConfiguration(file, defaults, serverConfig, this.getName());
+		final PluginDatabaseConfiguration configuration = new PluginDatabaseConfiguration(file, defaults, serverConfig, this.getName());
+		this.banStoreType = configuration.getStoreType();
+		if (this.banStoreType == BanStore.Type.MEMORY) return;
 		final DatabaseLoader loader = DatabaseLoaderFactory.getDatabaseLoader(configuration);
 		loader.initalise();
 		this.database = loader.getEbeanServer();
+		if (serverConfig.getDataSourceConfig() != null) this.connectionPoolSize = serverConfig.getDataSourceConfig().getMaxConnections();
+		final MigrationRunner runner = new MigrationRunner(this.database, getMigrations());
+		runner.migrate();
+		this.databaseDialect = runner.getDialect();
+	}
+
+	private DatabaseWriter loadDatabaseWriter() {
+		if (!configuration.isSingleWriterEnabled()) return new DirectDatabaseWriter(this.getDatabase());
+		if (!GroupCommitWriter.isSupported(this.getDatabase())) {
+			logger.log(Level.WARNING, "Unable to use a single writer as the database driver does not support savepoints.");
+			return new DirectDatabaseWriter(this.getDatabase());
+		}
+		if (this.databaseDialect == DatabaseDialect.SQLITE && configuration.isWriteAheadLogEnabled()) {
+			try {
+				final String mode = SqliteJournal.enableWriteAheadLog(this.getDatabase());
+				if (!"wal".equalsIgnoreCase(mode)) logger.log(Level.WARNING, "Unable to use write ahead logging, SQLite is using the {0} journal mode.", mode);
+			} catch (PersistenceException e) {
+				logger.log(Level.WARNING, "Unable to use write ahead logging: {0}", e.getMessage());
+			}
+		}
+		return new GroupCommitWriter(this.getDatabase(), configuration.getSingleWriterCommitInterval());
 	}
 
 	private void loadManagers() {
-		this.setPlayerRecordManager(new PlayerRecordManager(this.getDatabase()));
-		this.setBanRecordManager(new BanRecordManager(this.getDatabase()));
+		final MainThreadExecutor mainThreadExecutor = new MainThreadExecutor(TimeUnit.MILLISECONDS.toNanos(configuration.getDatabaseExecutorTickBudget()));
+		final DatabaseExecutor.Mode mode = configuration.getDatabaseExecutorMode();
+		// virtual threads are cheap, so only the connection pool limits how many may use the database at once
+		final int threads = (mode == DatabaseExecutor.Mode.VIRTUAL && this.connectionPoolSize > 0) ? this.connectionPoolSize : configuration.getDatabaseExecutorThreads();
+		this.databaseExecutor = new DatabaseExecutor(mode, threads, configuration.getDatabaseExecutorQueueSize(), mainThreadExecutor);
+		final BanStore store;
+		if (this.banStoreType == BanStore.Type.MEMORY) {
+			this.memoryBanStore = new MemoryBanStore();
+			this.memoryBanStore.load(this.getBanSnapshotFile());
+			store = this.memoryBanStore;
+		} else {
+			this.databaseWriter = this.loadDatabaseWriter();
+			store = new EbeanBanStore(this.getDatabase(), this.databaseWriter);
+		}
+		this.setPlayerRecordManager(new PlayerRecordManager(store, this.databaseExecutor.getExecutorService()));
+		this.setBanRecordManager(new BanRecordManager(store, this.databaseExecutor.getExecutorService()));
+		this.activeBanIndex = new ActiveBanIndex();
+		this.activeBanIndex.rebuild(this.getBanRecordManager().listActive());
+		final CircuitBreaker circuitBreaker = new CircuitBreaker(configuration.getLoginCheckFailureThreshold(), configuration.getLoginCheckOpenTime());
+		if (this.databaseExecutor.getMode() == DatabaseExecutor.Mode.VIRTUAL) {
+			// as with the database executor the connection pool, not the thread count, limits how many checks may run
+			this.loginCheckGuard = new LoginCheckGuard(circuitBreaker, configuration.getLoginCheckLatencyBudget(), configuration.getLoginCheckFallbackPolicy(), this.databaseExecutor.getThreads(), VirtualThreads.newThreadPerTaskExecutor());
+		} else {
+			this.loginCheckGuard = new LoginCheckGuard(circuitBreaker, configuration.getLoginCheckLatencyBudget(), configuration.getLoginCheckFallbackPolicy(), configuration.getLoginCheckConcurrentChecks());
+		}
 	}
 
 	private void registerCommands() {
 		Set<Command> commands = new HashSet<Command>();
-		AbstractCommand command = new AuditCommand(getPlayerRecordManager(), getBanRecordManager());
+		final BanPager banPager = new BanPager();
+		AbstractCommand command = new AuditCommand(getPlayerRecordManager(), getBanRecordManager(), databaseExecutor);
 		commands.add(command);
-		command = new BanCommand(this.getServer(), this.getServer().getPluginManager(), getPlayerRecordManager(), configuration.getBanLimits(), configuration.getImmunePlayers());
+		command = new BanCommand(this.getServer(), this.getServer().getPluginManager(), getBanRecordManager(), getPlayerRecordManager(), configuration.getBanLimits(), configuration.getImmunePlayers(), databaseExecutor);
 		commands.add(command);
 		getCommand("ban").setExecutor(new FallthroughCommandInvoker(this, this.getServer().getScheduler(), command));
 		command = new CheckCommand(getPlayerRecordManager());
 		commands.add(command);
-		command = new HistoryCommand(getPlayerRecordManager());
+		command = new HistoryCommand(getPlayerRecordManager(), getBanRecordManager(), getActiveBanIndex(), banPager, databaseExecutor);
 		commands.add(command);
-		command = new ExportCommand(getPlayerRecordManager(), getServer());
+		command = new ExportCommand(getPlayerRecordManager(), getServer(), databaseExecutor);
 		commands.add(command);
-		command = new ImportCommand(getPlayerRecordManager(), getServer());
+		command = new ImportCommand(getPlayerRecordManager(), getBanRecordManager(), getActiveBanIndex(), getServer(), databaseExecutor);
 		commands.add(command);
 		command = new KickCommand(getServer());
 		commands.add(command);
 		getCommand("kick").setExecutor(new FallthroughCommandInvoker(this, this.getServer().getScheduler(), command));
 		command = new LimitsCommand(configuration.getBanLimits());
 		commands.add(command);
-		command = new PardonCommand(getServer().getPluginManager(), getBanRecordManager(), getPlayerRecordManager());
+		command = new PardonCommand(getServer().getPluginManager(), getBanRecordManager(), getPlayerRecordManager(), databaseExecutor);
 		commands.add(command);
 		getCommand("pardon").setExecutor(new FallthroughCommandInvoker(this, this.getServer().getScheduler(), command));
-		command = new PurgeCommand(getPlayerRecordManager(), getBanRecordManager());
+		command = new PurgeCommand(getPlayerRecordManager(), getBanRecordManager(), getActiveBanIndex(), databaseExecutor);
 		commands.add(command);
-		command = new RecentCommand(getBanRecordManager());
+		command = new RecentCommand(getBanRecordManager(), banPager);
 		commands.add(command);
-		command = new UndoCommand(getPlayerRecordManager(), getBanRecordManager(), configuration.getUndoTime());
+		command = new UndoCommand(getPlayerRecordManager(), getBanRecordManager(), getActiveBanIndex(), configuration.getUndoTime(), databaseExecutor);
 		commands.add(command);
 		// create the invoker
 		command = new HelpCommand(commands, "bh");
@@ -199,13 +346,56 @@ public final class BanHammer extends JavaPlugin {
 	}
 
 	private void registerListeners() {
-		new NormalBannedPlayerListener(this, this.getServer().getPluginManager(), getServer(), this.getPlayerRecordManager());
+		new BanCacheListener(this, this.getServer().getPluginManager(), this.getActiveBanIndex());
+		new NormalBannedPlayerListener(this, this.getServer().getPluginManager(), getServer(), this.getActiveBanIndex());
 		new PlayerNotifier(this, this.getServer().getPluginManager(), getServer());
+		if (configuration.isAliasEnabled()) hookAlias();
+	}
+
+	private void scheduleTasks() {
+		final Runnable rebuildFilter = new Runnable() {
+			@Override
+			public void run() {
+				getActiveBanIndex().getBannedPlayerFilter().rebuild(getPlayerRecordManager());
+			}
+		};
+		this.getServer().getScheduler().runTaskTimerAsynchronously(this, rebuildFilter, 0, BANNED_PLAYER_FILTER_REBUILD_INTERVAL);
+		this.getServer().getScheduler().runTaskTimer(this, this.databaseExecutor.getMainThreadExecutor(), 1, 1);
+		final Runnable expireBans = new BanExpiryTask(this, this.getServer().getScheduler(), this.getServer().getPluginManager(), getActiveBanIndex(), getBanRecordManager());
+		this.getServer().getScheduler().runTaskTimerAsynchronously(this, expireBans, 0, BAN_EXPIRY_INTERVAL);
+		final Runnable repairStatistics = new Runnable() {
+			@Override
+			public void run() {
+				getBanRecordManager().repairStatistics();
+			}
+		};
+		this.getServer().getScheduler().runTaskTimerAsynchronously(this, repairStatistics, BAN_STATISTICS_REPAIR_INTERVAL, BAN_STATISTICS_REPAIR_INTERVAL);
+		if (this.memoryBanStore != null) {
+			final Runnable saveSnapshot = new Runnable() {
+				@Override
+				public void run() {
+					saveBanSnapshot();
+				}
+			};
+			this.getServer().getScheduler().runTaskTimerAsynchronously(this, saveSnapshot, BAN_SNAPSHOT_INTERVAL, BAN_SNAPSHOT_INTERVAL);
+		}
+	}
+
+	private File getBanSnapshotFile() {
+		return new File(this.getDataFolder().getPath() + File.separatorChar + BAN_SNAPSHOT_NAME);
+	}
+
+	private void saveBanSnapshot() {
+		try {
+			this.memoryBanStore.save(this.getBanSnapshotFile());
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Unable to save {0}: {1}", new Object[]{BAN_SNAPSHOT_NAME, e.getMessage()});
+		}
 	}
 
 	private void setupMetrics()
 	throws IOException {
-		new MetricsListener(this, this.getServer().getPluginManager(), getBanRecordManager());
+		new MetricsListener(this, this.getServer().getPluginManager(), getBanRecordManager(), this.loginCheckGuard.getCircuitBreaker());
 	}
 
 }
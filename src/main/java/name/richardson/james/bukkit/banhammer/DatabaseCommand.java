@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * DatabaseCommand.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer;
+
+import org.bukkit.command.CommandSender;
+
+import name.richardson.james.bukkit.utilities.command.AbstractCommand;
+import name.richardson.james.bukkit.utilities.localisation.Localised;
+
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseTask;
+
+import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.UNABLE_TO_COMPLETE_COMMAND;
+
+/**
+ * A command which reads or changes the database.
+ * <p/>
+ * Commands are invoked on the main thread, where they read their arguments and check permissions. Their database
+ * work is then submitted to the {@link DatabaseExecutor} and the result is handed back to the main thread for any
+ * Bukkit API calls, such as firing events and sending messages.
+ */
+public abstract class DatabaseCommand extends AbstractCommand {
+
+	/** The number of players changed through the Bukkit API by each main thread task. */
+	public static final int MAIN_THREAD_BATCH_SIZE = 100;
+
+	private final DatabaseExecutor databaseExecutor;
+
+	public DatabaseCommand(Localised name, Localised description, DatabaseExecutor databaseExecutor) {
+		super(name, description);
+		this.databaseExecutor = databaseExecutor;
+	}
+
+	@Override
+	public final boolean isAsynchronousCommand() {
+		// arguments must be read on the main thread, the database work is submitted by the command itself
+		return false;
+	}
+
+	protected DatabaseExecutor getDatabaseExecutor() {
+		return this.databaseExecutor;
+	}
+
+	protected <T> void submit(Task<T> task) {
+		this.databaseExecutor.submit(task);
+	}
+
+	/**
+	 * Database work carried out on behalf of a command sender, who is told if it fails.
+	 */
+	protected abstract class Task<T> implements DatabaseTask<T> {
+
+		private final CommandSender sender;
+
+		protected Task(CommandSender sender) {
+			this.sender = sender;
+		}
+
+		@Override
+		public void fail(Exception exception) {
+			this.sender.sendMessage(UNABLE_TO_COMPLETE_COMMAND.asErrorMessage());
+		}
+
+		protected CommandSender getSender() {
+			return this.sender;
+		}
+
+	}
+
+}
@@ -17,21 +17,24 @@
  ******************************************************************************/
 package name.richardson.james.bukkit.banhammer;
 
+import java.util.List;
+
 import org.bukkit.Server;
 import org.bukkit.permissions.Permissible;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
+import com.google.common.collect.Lists;
+
 import name.richardson.james.bukkit.utilities.formatters.ChoiceFormatter;
 
-import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 import name.richardson.james.bukkit.banhammer.utilities.formatters.BanCountChoiceFormatter;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.EXPORT_COMMAND_NAME;
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.EXPORT_COMMAND_DESC;
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.EXPORT_SUMMARY;
 
-public class ExportCommand extends AbstractCommand {
+public class ExportCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.export";
 
@@ -39,8 +42,8 @@ public class ExportCommand extends AbstractCommand {
 	private final PlayerRecordManager playerRecordManager;
 	private final Server server;
 
-	public ExportCommand(PlayerRecordManager playerRecordManager, Server server) {
-		super(EXPORT_COMMAND_NAME, EXPORT_COMMAND_DESC);
+	public ExportCommand(PlayerRecordManager playerRecordManager, Server server, DatabaseExecutor databaseExecutor) {
+		super(EXPORT_COMMAND_NAME, EXPORT_COMMAND_DESC, databaseExecutor);
 		this.playerRecordManager = playerRecordManager;
 		this.server = server;
 		this.choiceFormatter = new BanCountChoiceFormatter();
@@ -52,18 +55,29 @@ public class ExportCommand extends AbstractCommand {
 		return permissible.hasPermission(PERMISSION_ALL);
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	protected void execute() {
-		for (PlayerRecord playerRecord : playerRecordManager.list("", PlayerRecordManager.PlayerStatus.BANNED)) {
-			this.server.getOfflinePlayer(playerRecord.getName()).setBanned(true);
-		}
-		this.choiceFormatter.setArguments(playerRecordManager.count());
-		getContext().getCommandSender().sendMessage(choiceFormatter.getMessage());
+		submit(new Task<List<String>>(getContext().getCommandSender()) {
+			@Override
+			public List<String> call() {
+				return playerRecordManager.listCurrentlyBannedNames();
+			}
+
+			@Override
+			public void complete(List<String> playerNames) {
+				// ban players a few at a time so each tick stays within its budget
+				for (final List<String> batch : Lists.partition(playerNames, MAIN_THREAD_BATCH_SIZE)) {
+					getDatabaseExecutor().getMainThreadExecutor().execute(new Runnable() {
+						@Override
+						public void run() {
+							for (String playerName : batch) server.getOfflinePlayer(playerName).setBanned(true);
+						}
+					});
+				}
+				choiceFormatter.setArguments(playerNames.size());
+				getSender().sendMessage(choiceFormatter.getMessage());
+			}
+		});
 	}
 
 }
@@ -23,39 +23,53 @@ import java.util.List;
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
+import com.google.common.collect.Lists;
+
 import name.richardson.james.bukkit.utilities.command.argument.Argument;
+import name.richardson.james.bukkit.utilities.command.argument.IntegerMarshaller;
+import name.richardson.james.bukkit.utilities.command.argument.PageOptionArgument;
 import name.richardson.james.bukkit.utilities.command.argument.PlayerNamePositionalArgument;
 import name.richardson.james.bukkit.utilities.localisation.BukkitUtilities;
 
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.BanCursor;
+import name.richardson.james.bukkit.banhammer.ban.BanPager;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.HISTORY_COMMAND_NAME;
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.HISTORY_COMMAND_DESC;
+import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.PAGE_NO_MORE_BANS;
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.PLAYER_NEVER_BEEN_BANNED;
 
-public class HistoryCommand extends AbstractCommand {
+public class HistoryCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.history";
 	public static final String PERMISSION_OWN = "banhammer.history.own";
 	public static final String PERMISSION_OTHERS = "banhammer.history.others";
+	private static final int PAGE_SIZE = 5;
+	private final ActiveBanIndex activeBanIndex;
+	private final BanPager banPager;
+	private final BanRecordManager banRecordManager;
+	private final IntegerMarshaller page;
 	private final Argument playerName;
 	private final PlayerRecordManager playerRecordManager;
 
-	public HistoryCommand(PlayerRecordManager playerRecordManager) {
-		super(HISTORY_COMMAND_NAME, HISTORY_COMMAND_DESC);
+	public HistoryCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, ActiveBanIndex activeBanIndex, BanPager banPager, DatabaseExecutor databaseExecutor) {
+		super(HISTORY_COMMAND_NAME, HISTORY_COMMAND_DESC, databaseExecutor);
+		this.activeBanIndex = activeBanIndex;
 		this.playerRecordManager = playerRecordManager;
+		this.banRecordManager = banRecordManager;
+		this.banPager = banPager;
 		this.playerName = PlayerNamePositionalArgument.getInstance(playerRecordManager, 0, false, PlayerRecordManager.PlayerStatus.ANY);
+		this.page = PageOptionArgument.getInstance(1);
+		addArgument(page);
 		addArgument(playerName);
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	public boolean isAuthorised(Permissible permissible) {
 		return permissible.hasPermission(PERMISSION_ALL) || permissible.hasPermission(PERMISSION_OWN) || permissible.hasPermission(PERMISSION_OTHERS);
@@ -65,21 +79,52 @@ public class HistoryCommand extends AbstractCommand {
 	protected void execute() {
 		final CommandSender sender = getContext().getCommandSender();
 		final String playerName = (this.playerName.getString() == null) ? sender.getName() : this.playerName.getString();
-		final List<String> messages = new ArrayList<String>();
 		if (!hasPermission(sender, playerName)) {
-			messages.add(BukkitUtilities.INVOKER_NO_PERMISSION.asErrorMessage());
-		} else {
-			PlayerRecord record = playerRecordManager.find(playerName);
-			if (record != null && !record.getBans().isEmpty()) {
-				for (BanRecord ban : record.getBans()) {
-					BanRecord.BanRecordFormatter formatter = ban.getFormatter();
-					messages.addAll(formatter.getMessages());
-				}
-			} else {
-				messages.add(PLAYER_NEVER_BEEN_BANNED.asInfoMessage(playerName));
+			sender.sendMessage(BukkitUtilities.INVOKER_NO_PERMISSION.asErrorMessage());
+			return;
+		}
+		final String senderName = sender.getName();
+		final int page = Math.max(1, this.page.getInteger());
+		submit(new Task<List<String>>(sender) {
+			@Override
+			public List<String> call() {
+				return history(senderName, playerName, page);
+			}
+
+			@Override
+			public void complete(List<String> messages) {
+				getSender().sendMessage(messages.toArray(new String[messages.size()]));
 			}
+		});
+	}
+
+	private List<String> history(String senderName, String playerName, int page) {
+		final List<String> messages = new ArrayList<String>();
+		// players who have never been banned are the common case and need no database access
+		final PlayerRecord record = activeBanIndex.mightHaveBans(playerName) ? playerRecordManager.find(playerName) : null;
+		final List<BanRecord> bans = (record == null) ? new ArrayList<BanRecord>() : this.getPage(senderName, record, page);
+		if (!bans.isEmpty()) {
+			// oldest first so the most recent ban is at the bottom of the list
+			for (BanRecord ban : Lists.reverse(bans)) {
+				BanRecord.BanRecordFormatter formatter = ban.getFormatter();
+				messages.addAll(formatter.getMessages());
+			}
+		} else if (page > 1) {
+			messages.add(PAGE_NO_MORE_BANS.asInfoMessage());
+		} else {
+			messages.add(PLAYER_NEVER_BEEN_BANNED.asInfoMessage(playerName));
 		}
-		sender.sendMessage(messages.toArray(new String[messages.size()]));
+		return messages;
+	}
+
+	private List<BanRecord> getPage(String senderName, final PlayerRecord player, int page) {
+		final String listing = senderName + ":history:" + player.getNormalisedName();
+		return banPager.getPage(listing, page, PAGE_SIZE, new BanPager.Query() {
+			@Override
+			public List<BanRecord> list(int limit, BanCursor after) {
+				return banRecordManager.list(player, limit, after);
+			}
+		});
 	}
 
 	private boolean hasPermission(CommandSender sender, String playerName) {
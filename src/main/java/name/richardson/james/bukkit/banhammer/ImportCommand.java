@@ -17,30 +17,45 @@
  ******************************************************************************/
 package name.richardson.james.bukkit.banhammer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
+import com.google.common.collect.Lists;
+
 import name.richardson.james.bukkit.utilities.command.argument.Argument;
 import name.richardson.james.bukkit.utilities.command.argument.ReasonPositionalArgument;
 import name.richardson.james.bukkit.utilities.formatters.ChoiceFormatter;
 
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 import name.richardson.james.bukkit.banhammer.utilities.formatters.BanCountChoiceFormatter;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
 
-public class ImportCommand extends AbstractCommand {
+public class ImportCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.import";
+	private final ActiveBanIndex activeBanIndex;
+	private final BanRecordManager banRecordManager;
 	private final ChoiceFormatter choiceFormatter;
 	private final PlayerRecordManager playerRecordManager;
 	private final Argument reason;
 	private final Server server;
 
-	public ImportCommand(PlayerRecordManager playerRecordManager, Server server) {
-		super(IMPORT_COMMAND_NAME, IMPORT_COMMAND_DESC);
+	public ImportCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, ActiveBanIndex activeBanIndex, Server server, DatabaseExecutor databaseExecutor) {
+		super(IMPORT_COMMAND_NAME, IMPORT_COMMAND_DESC, databaseExecutor);
+		this.activeBanIndex = activeBanIndex;
+		this.banRecordManager = banRecordManager;
 		this.playerRecordManager = playerRecordManager;
 		this.server = server;
 		this.reason = ReasonPositionalArgument.getInstance(0, false);
@@ -48,11 +63,6 @@ public class ImportCommand extends AbstractCommand {
 		this.choiceFormatter.setMessage(IMPORT_SUMMARY.asInfoMessage());
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	public boolean isAuthorised(Permissible permissible) {
 		return permissible.hasPermission(PERMISSION_ALL);
@@ -60,17 +70,50 @@ public class ImportCommand extends AbstractCommand {
 
 	@Override
 	protected void execute() {
-		String reason = (this.reason.getString() == null) ? IMPORT_DEFAULT_REASON.asMessage() : this.reason.getString();
-		final String senderName = getContext().getCommandSender().getName();
-		for (OfflinePlayer player : this.server.getBannedPlayers()) {
+		final String reason = (this.reason.getString() == null) ? IMPORT_DEFAULT_REASON.asMessage() : this.reason.getString();
+		final CommandSender sender = getContext().getCommandSender();
+		final List<OfflinePlayer> players = new ArrayList<OfflinePlayer>(this.server.getBannedPlayers());
+		final List<String> playerNames = new ArrayList<String>(players.size());
+		for (OfflinePlayer player : players) playerNames.add(player.getName());
+		submit(new Task<Integer>(sender) {
+			@Override
+			public Integer call() {
+				return importBans(sender.getName(), playerNames, reason);
+			}
+
+			@Override
+			public void complete(Integer imported) {
+				// unban players a few at a time so each tick stays within its budget
+				for (final List<OfflinePlayer> batch : Lists.partition(players, MAIN_THREAD_BATCH_SIZE)) {
+					getDatabaseExecutor().getMainThreadExecutor().execute(new Runnable() {
+						@Override
+						public void run() {
+							for (OfflinePlayer player : batch) player.setBanned(false);
+						}
+					});
+				}
+				choiceFormatter.setArguments(imported);
+				sender.sendMessage(choiceFormatter.getMessage());
+			}
+		});
+	}
+
+	private int importBans(String creatorName, List<String> playerNames, String reason) {
+		if (playerNames.isEmpty()) return 0;
+		final Map<String, PlayerRecord> playerRecords = playerRecordManager.create(playerNames);
+		final PlayerRecord creator = playerRecordManager.createCreator(creatorName);
+		final List<BanRecord> records = new ArrayList<BanRecord>(playerRecords.size());
+		for (PlayerRecord playerRecord : playerRecords.values()) {
 			PlayerRecordManager.BannedPlayerBuilder builder = playerRecordManager.getBannedPlayerBuilder();
-			builder.setPlayer(player.getName());
-			builder.setCreator(senderName);
+			builder.setPlayer(playerRecord);
+			builder.setCreator(creator);
 			builder.setReason(reason);
-			builder.save();
-			player.setBanned(false);
+			records.add(builder.getRecord());
 		}
-		choiceFormatter.setArguments(this.server.getBannedPlayers().size());
-		getContext().getCommandSender().sendMessage(choiceFormatter.getMessage());
+		// players who are already banned are skipped by the save
+		final List<BanRecord> imported = banRecordManager.save(records);
+		for (BanRecord record : imported) activeBanIndex.put(record);
+		return imported.size();
 	}
+
 }
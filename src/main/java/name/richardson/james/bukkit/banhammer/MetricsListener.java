@@ -30,12 +30,15 @@ import name.richardson.james.bukkit.utilities.listener.AbstractListener;
 
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.BanStatistics;
 import name.richardson.james.bukkit.banhammer.ban.event.BanHammerPlayerBannedEvent;
 import name.richardson.james.bukkit.banhammer.ban.event.BanHammerPlayerPardonedEvent;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.CircuitBreaker;
 
 public class MetricsListener extends AbstractListener {
 
 	private final BanRecordManager banRecordManager;
+	private final CircuitBreaker loginCheckCircuitBreaker;
 	private final Metrics metrics;
 
 	/** The number of bans pardoned since the server started. */
@@ -47,20 +50,11 @@ public class MetricsListener extends AbstractListener {
 	/** The number of temporary bans made since the server started. */
 	private int temporaryBans = 0;
 
-	/** The total number of pardoned bans made by this server. */
-	private int totalPardonedBans;
-
-	/** The total number of permenant bans made by this server. */
-	private int totalPermanentBans;
-
-	/** The total number of temporary bans made by this server. */
-	private int totalTemporaryBans;
-
-	public MetricsListener(Plugin plugin, PluginManager pluginManager, BanRecordManager banRecordManager) throws IOException {
+	public MetricsListener(Plugin plugin, PluginManager pluginManager, BanRecordManager banRecordManager, CircuitBreaker loginCheckCircuitBreaker) throws IOException {
 		super(plugin, pluginManager);
 		this.banRecordManager = banRecordManager;
+		this.loginCheckCircuitBreaker = loginCheckCircuitBreaker;
 		this.metrics = new Metrics(plugin);
-		this.setInitialValues();
 		this.setupCustomMetrics();
 		this.metrics.start();
 	}
@@ -70,11 +64,9 @@ public class MetricsListener extends AbstractListener {
 		switch (event.getRecord().getType()) {
 			case PERMANENT:
 				this.permenantBans++;
-				this.totalPermanentBans++;
 				break;
 			case TEMPORARY:
 				this.temporaryBans++;
-				this.totalTemporaryBans++;
 				break;
 		}
 	}
@@ -82,32 +74,14 @@ public class MetricsListener extends AbstractListener {
 	@EventHandler(priority = EventPriority.MONITOR)
 	public void onPlayerPardoned(final BanHammerPlayerPardonedEvent event) {
 		this.pardonedBans++;
-		this.totalPardonedBans++;
-		switch (event.getRecord().getType()) {
-			case PERMANENT:
-				this.totalPermanentBans--;
-				break;
-			case TEMPORARY:
-				this.totalTemporaryBans--;
-				break;
-		}
 	}
 
-	private void setInitialValues() {
-		for (BanRecord record : banRecordManager.list()) {
-			if (record.getState() == BanRecord.State.PARDONED) {
-			 	this.totalPardonedBans++;
-				continue;
-			}
-			switch (record.getType()) {
-				case PERMANENT:
-					this.totalPermanentBans++;
-					break;
-				case TEMPORARY:
-					this.totalTemporaryBans++;
-					break;
-			}
-		}
+	/**
+	 * Get the total number of bans of a type which have not been pardoned, read from the statistics table.
+	 */
+	private int getUnpardonedBanCount(BanRecord.Type type) {
+		final BanStatistics statistics = this.banRecordManager.getStatistics();
+		return statistics.getCount(type, BanRecord.State.NORMAL) + statistics.getCount(type, BanRecord.State.EXPIRED);
 	}
 
 	private void setupCustomMetrics() {
@@ -137,19 +111,33 @@ public class MetricsListener extends AbstractListener {
 		graph2.addPlotter(new Metrics.Plotter("Permanent bans") {
 			@Override
 			public int getValue() {
-				return MetricsListener.this.totalPermanentBans;
+				return MetricsListener.this.getUnpardonedBanCount(BanRecord.Type.PERMANENT);
 			}
 		});
 		graph2.addPlotter(new Metrics.Plotter("Temporary bans") {
 			@Override
 			public int getValue() {
-				return MetricsListener.this.totalTemporaryBans;
+				return MetricsListener.this.getUnpardonedBanCount(BanRecord.Type.TEMPORARY);
 			}
 		});
 		graph2.addPlotter(new Metrics.Plotter("Pardoned bans") {
 			@Override
 			public int getValue() {
-				return MetricsListener.this.totalPardonedBans;
+				return MetricsListener.this.banRecordManager.getStatistics().getPardonedCount();
+			}
+		});
+		// Create a graph to show how often logins could not be fully checked
+		final Metrics.Graph graph3 = this.metrics.createGraph("Login Check Fallbacks");
+		graph3.addPlotter(new Metrics.Plotter("Fallbacks used") {
+			@Override
+			public int getValue() {
+				return (int) MetricsListener.this.loginCheckCircuitBreaker.getFallbackCount();
+			}
+		});
+		graph3.addPlotter(new Metrics.Plotter("Circuit breaker trips") {
+			@Override
+			public int getValue() {
+				return (int) MetricsListener.this.loginCheckCircuitBreaker.getTripCount();
 			}
 		});
 	}
@@ -20,50 +20,45 @@ package name.richardson.james.bukkit.banhammer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 import org.bukkit.plugin.PluginManager;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
 import name.richardson.james.bukkit.utilities.command.argument.Argument;
 import name.richardson.james.bukkit.utilities.command.argument.PlayerNamePositionalArgument;
 import name.richardson.james.bukkit.utilities.command.argument.SilentSwitchArgument;
 
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
 import name.richardson.james.bukkit.banhammer.ban.event.BanHammerPlayerPardonedEvent;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
 
-public class PardonCommand extends AbstractCommand {
+public class PardonCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.pardon";
 	public static final String PERMISSION_OWN = "banhammer.pardon.own";
 	public static final String PERMISSION_OTHERS = "banhammer.pardon.others";
 	private final BanRecordManager banRecordManager;
-	private final PlayerRecordManager playerRecordManager;
 	private final Argument players;
 	private final PluginManager pluginManager;
 	private final SilentSwitchArgument silent;
 
-	public PardonCommand(PluginManager pluginManager, BanRecordManager banRecordManager, PlayerRecordManager playerRecordManager) {
-		super(PARDON_COMMAND_NAME, PARDON_COMMAND_DESC);
+	public PardonCommand(PluginManager pluginManager, BanRecordManager banRecordManager, PlayerRecordManager playerRecordManager, DatabaseExecutor databaseExecutor) {
+		super(PARDON_COMMAND_NAME, PARDON_COMMAND_DESC, databaseExecutor);
 		this.pluginManager = pluginManager;
 		this.banRecordManager = banRecordManager;
-		this.playerRecordManager = playerRecordManager;
 		this.silent = SilentSwitchArgument.getInstance();
 		this.players = PlayerNamePositionalArgument.getInstance(playerRecordManager, 0, true, PlayerRecordManager.PlayerStatus.BANNED);
 		addArgument(silent);
 		addArgument(players);
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	public boolean isAuthorised(Permissible permissible) {
 		return permissible.hasPermission(PERMISSION_ALL) || permissible.hasPermission(PERMISSION_OWN) || permissible.hasPermission(PERMISSION_OTHERS);
@@ -71,30 +66,54 @@ public class PardonCommand extends AbstractCommand {
 
 	@Override
 	protected void execute() {
-		boolean silent = this.silent.isSet();
+		final boolean silent = this.silent.isSet();
 		final List<String> messages = new ArrayList<String>();
 		final Collection<String> players = this.players.getStrings();
 		final CommandSender sender = getContext().getCommandSender();
+		final boolean own = sender.hasPermission(PERMISSION_OWN);
+		final boolean others = sender.hasPermission(PERMISSION_OTHERS);
+		submit(new Task<List<BanRecord>>(sender) {
+			@Override
+			public List<BanRecord> call() {
+				return pardon(sender.getName(), players, own, others, messages);
+			}
+
+			@Override
+			public void complete(List<BanRecord> records) {
+				// events are only fired once the pardons have been committed
+				for (BanRecord record : records) {
+					if (silent) messages.add(PARDON_PLAYER.asInfoMessage(record.getPlayer().getName()));
+					BanHammerPlayerPardonedEvent event = new BanHammerPlayerPardonedEvent(record, sender, silent);
+					pluginManager.callEvent(event);
+				}
+				sender.sendMessage(messages.toArray(new String[messages.size()]));
+			}
+		});
+	}
+
+	private List<BanRecord> pardon(String senderName, Collection<String> players, boolean own, boolean others, List<String> messages) {
+		// the active bans are found with their creators in one query
+		final Map<String, BanRecord> bans = banRecordManager.findActive(players);
+		final List<BanRecord> records = new ArrayList<BanRecord>();
 		for (String playerName : players) {
-			BanRecord record = (playerRecordManager.exists(playerName)) ? playerRecordManager.find(playerName).getActiveBan() : null;
+			BanRecord record = bans.get(PlayerRecord.normalise(playerName));
 			if (record == null) {
 				messages.add(PLAYER_NOT_BANNED.asInfoMessage(playerName));
-			} else if (hasPermission(sender, record.getCreator().getName())) {
-				record.setState(BanRecord.State.PARDONED);
-				banRecordManager.save(record);
-				if (silent) messages.add(PARDON_PLAYER.asInfoMessage(playerName));
-				BanHammerPlayerPardonedEvent event = new BanHammerPlayerPardonedEvent(record, sender, silent);
-				pluginManager.callEvent(event);
+			} else if (records.contains(record)) {
+				continue;
+			} else if (hasPermission(senderName, own, others, record.getCreator().getName())) {
+				records.add(record);
 			} else {
 				messages.add(PARDON_UNABLE_TO_TARGET_PLAYER.asErrorMessage(playerName));
 			}
 		}
-		sender.sendMessage(messages.toArray(new String[messages.size()]));
+		banRecordManager.pardon(records);
+		return records;
 	}
 
-	private boolean hasPermission(CommandSender sender, String creatorName) {
-		final boolean isSenderTargetingSelf = (creatorName.equalsIgnoreCase(sender.getName()));
-		return sender.hasPermission(PERMISSION_OWN) && isSenderTargetingSelf || sender.hasPermission(PERMISSION_OTHERS) && !isSenderTargetingSelf;
+	private boolean hasPermission(String senderName, boolean own, boolean others, String creatorName) {
+		final boolean isSenderTargetingSelf = (creatorName.equalsIgnoreCase(senderName));
+		return own && isSenderTargetingSelf || others && !isSenderTargetingSelf;
 	}
 
 }
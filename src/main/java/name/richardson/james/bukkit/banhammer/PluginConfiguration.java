@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -31,12 +32,27 @@ import name.richardson.james.bukkit.utilities.formatters.time.PreciseDurationTim
 import name.richardson.james.bukkit.utilities.formatters.time.TimeFormatter;
 import name.richardson.james.bukkit.utilities.persistence.configuration.SimplePluginConfiguration;
 
+import name.richardson.james.bukkit.banhammer.ban.event.LoginCheckGuard;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
+
 public final class PluginConfiguration extends SimplePluginConfiguration {
 
 	private static final String IMMUNE_PLAYERS_KEY = "immune-players";
 	private static final String UNDO_TIME_KEY = "undo-time";
 	private static final String ALIAS_PLUGIN_ENABLED_KEY = "alias-plugin.enabled";
 	private static final String LIMITS_KEY = "ban-limits";
+	private static final String DATABASE_EXECUTOR_MODE_KEY = "database-executor.mode";
+	private static final String DATABASE_EXECUTOR_THREADS_KEY = "database-executor.threads";
+	private static final String DATABASE_EXECUTOR_QUEUE_SIZE_KEY = "database-executor.queue-size";
+	private static final String DATABASE_EXECUTOR_TICK_BUDGET_KEY = "database-executor.tick-budget";
+	private static final String LOGIN_CHECK_LATENCY_BUDGET_KEY = "login-check.latency-budget";
+	private static final String LOGIN_CHECK_CONCURRENT_CHECKS_KEY = "login-check.concurrent-checks";
+	private static final String LOGIN_CHECK_FAILURE_THRESHOLD_KEY = "login-check.failure-threshold";
+	private static final String LOGIN_CHECK_OPEN_TIME_KEY = "login-check.open-time";
+	private static final String LOGIN_CHECK_FALLBACK_POLICY_KEY = "login-check.fallback-policy";
+	private static final String SINGLE_WRITER_ENABLED_KEY = "single-writer.enabled";
+	private static final String SINGLE_WRITER_COMMIT_INTERVAL_KEY = "single-writer.commit-interval";
+	private static final String SINGLE_WRITER_WRITE_AHEAD_LOG_KEY = "single-writer.write-ahead-log";
 
 	private final Map<String, Long> limits = new LinkedHashMap<String, Long>();
 	private final TimeFormatter timeFormatter = new PreciseDurationTimeFormatter();
@@ -58,12 +74,62 @@ public final class PluginConfiguration extends SimplePluginConfiguration {
 		return this.limits;
 	}
 
+	public DatabaseExecutor.Mode getDatabaseExecutorMode() {
+		final String mode = this.getConfiguration().getString(DATABASE_EXECUTOR_MODE_KEY, "PLATFORM");
+		try {
+			return DatabaseExecutor.Mode.valueOf(mode.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return DatabaseExecutor.Mode.PLATFORM;
+		}
+	}
+
+	public int getDatabaseExecutorQueueSize() {
+		return Math.max(1, this.getConfiguration().getInt(DATABASE_EXECUTOR_QUEUE_SIZE_KEY, 100));
+	}
+
+	public int getDatabaseExecutorThreads() {
+		return Math.max(1, this.getConfiguration().getInt(DATABASE_EXECUTOR_THREADS_KEY, 2));
+	}
+
+	public long getDatabaseExecutorTickBudget() {
+		return Math.max(1, this.getConfiguration().getLong(DATABASE_EXECUTOR_TICK_BUDGET_KEY, 5));
+	}
+
 	public Set<String> getImmunePlayers() {
 		final Set<String> set = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
 		set.addAll(this.getConfiguration().getStringList(IMMUNE_PLAYERS_KEY));
 		return set;
 	}
 
+	public int getLoginCheckConcurrentChecks() {
+		return Math.max(1, this.getConfiguration().getInt(LOGIN_CHECK_CONCURRENT_CHECKS_KEY, 4));
+	}
+
+	public int getLoginCheckFailureThreshold() {
+		return Math.max(1, this.getConfiguration().getInt(LOGIN_CHECK_FAILURE_THRESHOLD_KEY, 3));
+	}
+
+	public LoginCheckGuard.FallbackPolicy getLoginCheckFallbackPolicy() {
+		final String policy = this.getConfiguration().getString(LOGIN_CHECK_FALLBACK_POLICY_KEY, "FAIL_OPEN");
+		try {
+			return LoginCheckGuard.FallbackPolicy.valueOf(policy.toUpperCase(Locale.ENGLISH).replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			return LoginCheckGuard.FallbackPolicy.FAIL_OPEN;
+		}
+	}
+
+	public long getLoginCheckLatencyBudget() {
+		return Math.max(1, this.getConfiguration().getLong(LOGIN_CHECK_LATENCY_BUDGET_KEY, 500));
+	}
+
+	public long getLoginCheckOpenTime() {
+		return timeFormatter.getDurationInMilliseconds(this.getConfiguration().getString(LOGIN_CHECK_OPEN_TIME_KEY, "30s"));
+	}
+
+	public long getSingleWriterCommitInterval() {
+		return Math.max(0, this.getConfiguration().getLong(SINGLE_WRITER_COMMIT_INTERVAL_KEY, 5));
+	}
+
 	public long getUndoTime() {
 		return timeFormatter.getDurationInMilliseconds(this.getConfiguration().getString(UNDO_TIME_KEY, "1m"));
 	}
@@ -72,6 +138,14 @@ public final class PluginConfiguration extends SimplePluginConfiguration {
 		return this.getConfiguration().getBoolean(ALIAS_PLUGIN_ENABLED_KEY);
 	}
 
+	public boolean isSingleWriterEnabled() {
+		return this.getConfiguration().getBoolean(SINGLE_WRITER_ENABLED_KEY, false);
+	}
+
+	public boolean isWriteAheadLogEnabled() {
+		return this.getConfiguration().getBoolean(SINGLE_WRITER_WRITE_AHEAD_LOG_KEY, true);
+	}
+
 	@Override
 	public String toString() {
 		return "PluginConfiguration{" +
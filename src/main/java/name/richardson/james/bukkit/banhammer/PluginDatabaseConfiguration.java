@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * PluginDatabaseConfiguration.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import com.avaje.ebean.config.ServerConfig;
+
+import name.richardson.james.bukkit.utilities.persistence.configuration.SimpleDatabaseConfiguration;
+
+import name.richardson.james.bukkit.banhammer.ban.BanStore;
+
+public final class PluginDatabaseConfiguration extends SimpleDatabaseConfiguration {
+
+	private static final String STORE_KEY = "store";
+
+	public PluginDatabaseConfiguration(final File file, final InputStream defaults, final ServerConfig serverConfig, final String pluginName)
+	throws IOException {
+		super(file, defaults, serverConfig, pluginName);
+	}
+
+	public BanStore.Type getStoreType() {
+		final String type = this.getConfiguration().getString(STORE_KEY, "EBEAN");
+		try {
+			return BanStore.Type.valueOf(type.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return BanStore.Type.EBEAN;
+		}
+	}
+
+}
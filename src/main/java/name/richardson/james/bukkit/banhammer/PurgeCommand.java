@@ -19,35 +19,40 @@ package name.richardson.james.bukkit.banhammer;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
 import name.richardson.james.bukkit.utilities.command.argument.Argument;
 import name.richardson.james.bukkit.utilities.command.argument.PlayerNamePositionalArgument;
 import name.richardson.james.bukkit.utilities.formatters.ChoiceFormatter;
 
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 import name.richardson.james.bukkit.banhammer.utilities.formatters.BanCountChoiceFormatter;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
 
-public class PurgeCommand extends AbstractCommand {
+public class PurgeCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.purge";
 	public static final String PERMISSION_OWN = "banhammer.purge.own";
 	public static final String PERMISSION_OTHERS = "banhammer.purge.others";
+	private final ActiveBanIndex activeBanIndex;
 	private final BanRecordManager banRecordManager;
 	private final ChoiceFormatter choiceFormatter;
 	private final PlayerRecordManager playerRecordManager;
 	private final Argument players;
 
-	public PurgeCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager) {
-		super(PURGE_COMMAND_NAME, PURGE_COMMAND_DESC);
+	public PurgeCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, ActiveBanIndex activeBanIndex, DatabaseExecutor databaseExecutor) {
+		super(PURGE_COMMAND_NAME, PURGE_COMMAND_DESC, databaseExecutor);
+		this.activeBanIndex = activeBanIndex;
 		this.playerRecordManager = playerRecordManager;
 		this.banRecordManager = banRecordManager;
 		this.choiceFormatter = new BanCountChoiceFormatter();
@@ -56,11 +61,6 @@ public class PurgeCommand extends AbstractCommand {
 		addArgument(players);
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	public boolean isAuthorised(Permissible permissible) {
 		return permissible.hasPermission(PERMISSION_ALL) || permissible.hasPermission(PERMISSION_OTHERS) || permissible.hasPermission(PERMISSION_OWN);
@@ -68,28 +68,58 @@ public class PurgeCommand extends AbstractCommand {
 
 	@Override
 	protected void execute() {
-		Collection<String> players = this.players.getStrings();
-		Collection<BanRecord> records = new ArrayList<BanRecord>();
+		final Collection<String> players = this.players.getStrings();
 		final CommandSender sender = getContext().getCommandSender();
-		boolean own = sender.hasPermission(PERMISSION_OWN);
-		boolean others = sender.hasPermission(PERMISSION_OTHERS);
-		for (String playerName : players) {
-			PlayerRecord record = playerRecordManager.find(playerName);
-			if (record != null) {
-				for (BanRecord ban : record.getBans()) {
-					boolean banCreatedBySender = ban.getCreator().getName().equalsIgnoreCase(sender.getName());
-					if (banCreatedBySender && !own) continue;
-					if (!banCreatedBySender && !others) continue;
-					records.add(ban);
+		final boolean own = sender.hasPermission(PERMISSION_OWN);
+		final boolean others = sender.hasPermission(PERMISSION_OTHERS);
+		submit(new Task<Map<String, Integer>>(sender) {
+			@Override
+			public Map<String, Integer> call() {
+				return purge(sender.getName(), players, own, others);
+			}
+
+			@Override
+			public void complete(Map<String, Integer> purged) {
+				for (Map.Entry<String, Integer> entry : purged.entrySet()) {
+					if (entry.getValue() == null) {
+						sender.sendMessage(PLAYER_NEVER_BEEN_BANNED.asInfoMessage(entry.getKey()));
+					} else {
+						choiceFormatter.setArguments(entry.getValue(), entry.getKey());
+						sender.sendMessage(choiceFormatter.getMessage());
+					}
 				}
-			} else {
-				sender.sendMessage(PLAYER_NEVER_BEEN_BANNED.asInfoMessage(playerName));
 			}
-			this.choiceFormatter.setArguments(records.size(), playerName);
-			banRecordManager.delete(records);
-			sender.sendMessage(choiceFormatter.getMessage());
+		});
+	}
+
+	/**
+	 * Delete the bans of several players in one transaction.
+	 *
+	 * @return the number of bans purged for each player, or null if the player has never been banned
+	 */
+	private Map<String, Integer> purge(String senderName, Collection<String> players, boolean own, boolean others) {
+		final Map<String, PlayerRecord> playerRecords = playerRecordManager.find(players);
+		final Map<String, Integer> purged = new LinkedHashMap<String, Integer>();
+		final Collection<BanRecord> records = new ArrayList<BanRecord>();
+		for (String playerName : players) {
+			PlayerRecord record = playerRecords.remove(PlayerRecord.normalise(playerName));
+			if (record == null) {
+				if (!purged.containsKey(playerName)) purged.put(playerName, null);
+				continue;
+			}
+			int count = 0;
+			for (BanRecord ban : record.getBans()) {
+				boolean banCreatedBySender = ban.getCreator().getName().equalsIgnoreCase(senderName);
+				if (banCreatedBySender && !own) continue;
+				if (!banCreatedBySender && !others) continue;
+				records.add(ban);
+				count++;
+			}
+			purged.put(playerName, count);
 		}
+		banRecordManager.delete(records);
+		for (BanRecord ban : records) activeBanIndex.remove(ban);
+		return purged;
 	}
 
 }
-
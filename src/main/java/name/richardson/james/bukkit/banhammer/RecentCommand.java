@@ -27,7 +27,10 @@ import com.google.common.collect.Lists;
 import name.richardson.james.bukkit.utilities.command.AbstractCommand;
 import name.richardson.james.bukkit.utilities.command.argument.BanCountOptionArgument;
 import name.richardson.james.bukkit.utilities.command.argument.IntegerMarshaller;
+import name.richardson.james.bukkit.utilities.command.argument.PageOptionArgument;
 
+import name.richardson.james.bukkit.banhammer.ban.BanCursor;
+import name.richardson.james.bukkit.banhammer.ban.BanPager;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
 
@@ -37,14 +40,24 @@ public class RecentCommand extends AbstractCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.recent";
 	private static final int DEFAULT_LIMIT = 5;
-	private final BanRecordManager banRecordManager;
+	private final BanPager banPager;
+	private final BanPager.Query bans;
 	private IntegerMarshaller count;
+	private IntegerMarshaller page;
 
-	public RecentCommand(BanRecordManager banRecordManager) {
+	public RecentCommand(final BanRecordManager banRecordManager, BanPager banPager) {
 		super(RECENT_COMMAND_NAME, RECENT_COMMAND_DESC);
-		this.banRecordManager = banRecordManager;
+		this.banPager = banPager;
+		this.bans = new BanPager.Query() {
+			@Override
+			public List<BanRecord> list(int limit, BanCursor after) {
+				return banRecordManager.list(limit, after);
+			}
+		};
 		this.count = BanCountOptionArgument.getInstance(DEFAULT_LIMIT);
+		this.page = PageOptionArgument.getInstance(1);
 		addArgument(count);
+		addArgument(page);
 	}
 
 	@Override
@@ -59,10 +72,13 @@ public class RecentCommand extends AbstractCommand {
 
 	@Override
 	protected void execute() {
-		int count = this.count.getInteger();
-		List<BanRecord> bans = banRecordManager.list(count);
+		int count = Math.max(1, this.count.getInteger());
+		int page = Math.max(1, this.page.getInteger());
+		List<BanRecord> bans = banPager.getPage(getContext().getCommandSender().getName() + ":recent", page, count, this.bans);
 		List<String> messages = new ArrayList<String>();
-		if (bans.isEmpty()) {
+		if (bans.isEmpty() && page > 1) {
+			messages.add(PAGE_NO_MORE_BANS.asInfoMessage());
+		} else if (bans.isEmpty()) {
 			messages.add(RECENT_NO_BANS.asInfoMessage());
 		} else {
 			// reverse the list so the most recent ban is at the bottom of the list
@@ -23,30 +23,33 @@ import java.util.Collection;
 import org.bukkit.command.CommandSender;
 import org.bukkit.permissions.Permissible;
 
-import name.richardson.james.bukkit.utilities.command.AbstractCommand;
 import name.richardson.james.bukkit.utilities.command.argument.Argument;
 import name.richardson.james.bukkit.utilities.command.argument.PlayerNamePositionalArgument;
 
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.DatabaseExecutor;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
 
-public class UndoCommand extends AbstractCommand {
+public class UndoCommand extends DatabaseCommand {
 
 	public static final String PERMISSION_ALL = "banhammer.undo";
 	public static final String PERMISSION_OWN = "banhammer.undo.own";
 	public static final String PERMISSION_OTHERS = "banhammer.undo.others";
 	public static final String PERMISSION_UNRESTRICTED = "banhammer.undo.unrestricted";
+	private final ActiveBanIndex activeBanIndex;
 	private final BanRecordManager banRecordManager;
 	private final PlayerRecordManager playerRecordManager;
 	private final Argument players;
 	private final long undoTime;
 
-	public UndoCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, final long undoTime) {
-		super(UNDO_COMMAND_NAME, UNDO_COMMAND_DESC);
+	public UndoCommand(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, ActiveBanIndex activeBanIndex, final long undoTime, DatabaseExecutor databaseExecutor) {
+		super(UNDO_COMMAND_NAME, UNDO_COMMAND_DESC, databaseExecutor);
+		this.activeBanIndex = activeBanIndex;
 		this.playerRecordManager = playerRecordManager;
 		this.banRecordManager = banRecordManager;
 		this.undoTime = undoTime;
@@ -54,11 +57,6 @@ public class UndoCommand extends AbstractCommand {
 		addArgument(players);
 	}
 
-	@Override
-	public boolean isAsynchronousCommand() {
-		return false;
-	}
-
 	@Override
 	public boolean isAuthorised(Permissible permissible) {
 		return permissible.hasPermission(PERMISSION_ALL) || permissible.hasPermission(PERMISSION_OWN) || permissible.hasPermission(PERMISSION_OTHERS);
@@ -66,8 +64,26 @@ public class UndoCommand extends AbstractCommand {
 
 	@Override
 	protected void execute() {
+		final CommandSender sender = getContext().getCommandSender();
+		final Collection<String> players = this.players.getStrings();
+		final boolean own = sender.hasPermission(PERMISSION_OWN);
+		final boolean others = sender.hasPermission(PERMISSION_OTHERS);
+		final boolean unrestricted = sender.hasPermission(PERMISSION_UNRESTRICTED);
+		submit(new Task<Collection<String>>(sender) {
+			@Override
+			public Collection<String> call() {
+				return undo(sender.getName(), players, own, others, unrestricted);
+			}
+
+			@Override
+			public void complete(Collection<String> messages) {
+				sender.sendMessage(messages.toArray(new String[messages.size()]));
+			}
+		});
+	}
+
+	private Collection<String> undo(String senderName, Collection<String> players, boolean own, boolean others, boolean unrestricted) {
 		Collection<String> messages = new ArrayList<String>();
-		Collection<String> players = this.players.getStrings();
 		for (String playerName : players) {
 			PlayerRecord record = playerRecordManager.find(playerName);
 			BanRecord ban = (record == null || record.getActiveBan() == null) ? null : record.getActiveBan();
@@ -75,25 +91,26 @@ public class UndoCommand extends AbstractCommand {
 				messages.add(PLAYER_NEVER_BEEN_BANNED.asWarningMessage(playerName));
 			} else if (ban == null) {
 				messages.add(PLAYER_NOT_BANNED.asWarningMessage(playerName));
-			} else if (!hasPermission(getContext().getCommandSender(), ban)) {
+			} else if (!hasPermission(senderName, own, others, ban)) {
 				messages.add(UNDO_NOT_PERMITTED.asErrorMessage(ban.getCreator().getName()));
-			} else if (!withinTimeLimit(getContext().getCommandSender(), ban)) {
+			} else if (!unrestricted && !withinTimeLimit(ban)) {
 				messages.add(UNDO_TIME_EXPIRED.asErrorMessage());
 			} else {
 				banRecordManager.delete(ban);
+				activeBanIndex.remove(ban);
 				messages.add(UNDO_COMPLETE.asInfoMessage(playerName));
 			}
 		}
-		getContext().getCommandSender().sendMessage(messages.toArray(new String[messages.size()]));
+		return messages;
 	}
 
-	private boolean hasPermission(CommandSender sender, final BanRecord ban) {
-		final boolean isSenderTargetingSelf = (ban.getCreator().getName().equalsIgnoreCase(sender.getName()));
-		return sender.hasPermission(PERMISSION_OWN) && isSenderTargetingSelf || sender.hasPermission(PERMISSION_OTHERS) && !isSenderTargetingSelf;
+	private boolean hasPermission(String senderName, boolean own, boolean others, final BanRecord ban) {
+		final boolean isSenderTargetingSelf = (ban.getCreator().getName().equalsIgnoreCase(senderName));
+		return own && isSenderTargetingSelf || others && !isSenderTargetingSelf;
 	}
 
-	private boolean withinTimeLimit(CommandSender sender, final BanRecord ban) {
-		return sender.hasPermission(PERMISSION_UNRESTRICTED) || (System.currentTimeMillis() - ban.getCreatedAt().getTime()) <= this.undoTime;
+	private boolean withinTimeLimit(final BanRecord ban) {
+		return (System.currentTimeMillis() - ban.getCreatedAt().getTime()) <= this.undoTime;
 	}
 
 }
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * ActiveBanIndex.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * An in-memory index of every active ban keyed by the lowercase name of the banned player.
+ * <p/>
+ * The index is filled when the plugin is enabled and then kept up to date as bans are made, pardoned or
+ * deleted. This allows login checks to be answered without making any queries against the database.
+ * <p/>
+ * Temporary bans are also added to an expiry queue so they can be removed from the index, and marked as expired,
+ * once they have expired. Kick messages rendered for indexed bans are cached until the ban leaves the index.
+ */
+public class ActiveBanIndex {
+
+	/**
+	 * Notified when a player gains or loses their active ban in the index.
+	 * <p/>
+	 * Listeners are not notified when the whole index is rebuilt.
+	 */
+	public interface ChangeListener {
+
+		void onBanAdded(BanRecord record);
+
+		void onBanRemoved(BanRecord record);
+
+	}
+
+	private final BanExpiryQueue banExpiryQueue = new BanExpiryQueue();
+	private final BannedPlayerFilter bannedPlayerFilter;
+	private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<ChangeListener>();
+	private final KickMessageCache kickMessageCache = new KickMessageCache();
+	private final ConcurrentMap<String, BanRecord> bans = new ConcurrentHashMap<String, BanRecord>();
+	private final Logger logger = PluginLoggerFactory.getLogger(ActiveBanIndex.class);
+
+	public ActiveBanIndex() {
+		this(new BannedPlayerFilter());
+	}
+
+	public ActiveBanIndex(BannedPlayerFilter bannedPlayerFilter) {
+		this.bannedPlayerFilter = bannedPlayerFilter;
+	}
+
+	/**
+	 * Check if two records are the same ban.
+	 * <p/>
+	 * Bans waiting in the write-behind queue do not have an id until they are saved so they only match themselves.
+	 * Once saved the id is set on the same instance, so records loaded from the database match it from then on.
+	 */
+	static boolean isSameBan(BanRecord a, BanRecord b) {
+		return a == b || (a.getId() != 0 && a.getId() == b.getId());
+	}
+
+	private static String normalise(String playerName) {
+		return playerName.toLowerCase(Locale.ENGLISH);
+	}
+
+	public void addChangeListener(ChangeListener listener) {
+		this.changeListeners.add(listener);
+	}
+
+	/**
+	 * Get the active ban for a player.
+	 *
+	 * @param playerName the name of the player
+	 * @return the active ban or null if the player is not banned
+	 */
+	public BanRecord get(String playerName) {
+		final String key = normalise(playerName);
+		final BanRecord record = this.bans.get(key);
+		if (record == null) return null;
+		if (record.getState() == BanRecord.State.NORMAL) return record;
+		// the ban has expired since it was indexed
+		if (this.bans.remove(key, record)) this.fireBanRemoved(record);
+		this.kickMessageCache.invalidate(record);
+		return null;
+	}
+
+	/**
+	 * Remove bans which have expired from the index.
+	 *
+	 * @param limit the maximum number of bans to remove
+	 * @return the bans which have expired
+	 */
+	public List<BanRecord> expire(int limit) {
+		final List<BanRecord> records = this.banExpiryQueue.drainExpired(limit);
+		for (BanRecord record : records) {
+			this.removeIfIndexed(record);
+			this.kickMessageCache.invalidate(record);
+		}
+		return records;
+	}
+
+	public BanExpiryQueue getBanExpiryQueue() {
+		return banExpiryQueue;
+	}
+
+	/**
+	 * Get the active bans of several players at once.
+	 *
+	 * @param playerNames the names of the players
+	 * @return the active bans of the players who are banned, in the same order as the names
+	 */
+	public List<BanRecord> getActiveBans(Collection<String> playerNames) {
+		final List<BanRecord> records = new ArrayList<BanRecord>();
+		for (String playerName : playerNames) {
+			final BanRecord record = this.get(playerName);
+			if (record != null) records.add(record);
+		}
+		return records;
+	}
+
+	public BannedPlayerFilter getBannedPlayerFilter() {
+		return bannedPlayerFilter;
+	}
+
+	public KickMessageCache getKickMessageCache() {
+		return kickMessageCache;
+	}
+
+	public boolean contains(String playerName) {
+		return this.get(playerName) != null;
+	}
+
+	/**
+	 * Check if a player might have been banned in the past.
+	 * <p/>
+	 * Every ban passed to {@link #put(BanRecord)} is also added to the banned player filter, even if it is no
+	 * longer active, so players who return false here have never been banned and do not need to be looked up in the
+	 * database.
+	 *
+	 * @param playerName the name of the player
+	 * @return false if the player has definitely never been banned
+	 */
+	public boolean mightHaveBans(String playerName) {
+		return this.bannedPlayerFilter.mightContain(playerName);
+	}
+
+	public void put(BanRecord record) {
+		this.bannedPlayerFilter.put(record.getPlayer().getName());
+		if (record.getState() != BanRecord.State.NORMAL) return;
+		final BanRecord previous = this.index(record);
+		if (previous == null) this.fireBanAdded(record);
+		if (record.getType() == BanRecord.Type.TEMPORARY && (previous == null || !isSameBan(previous, record))) {
+			this.banExpiryQueue.schedule(record);
+		}
+	}
+
+	/**
+	 * Replace the contents of the index with the bans provided.
+	 * <p/>
+	 * Temporary bans which have already expired are not indexed but are added to the expiry queue so they will be
+	 * marked as expired.
+	 *
+	 * @param records the bans which are stored as active
+	 */
+	public void rebuild(Collection<BanRecord> records) {
+		this.bans.clear();
+		this.banExpiryQueue.clear();
+		this.kickMessageCache.clear();
+		for (BanRecord record : records) {
+			final BanRecord.State state = record.getState();
+			if (state == BanRecord.State.PARDONED) continue;
+			if (record.getType() == BanRecord.Type.TEMPORARY) this.banExpiryQueue.schedule(record);
+			if (state == BanRecord.State.NORMAL) this.index(record);
+		}
+		logger.log(Level.FINE, "Indexed {0} active bans.", this.bans.size());
+	}
+
+	/**
+	 * Remove a ban from the index.
+	 * <p/>
+	 * The ban is only removed if it is the one currently indexed for the player.
+	 *
+	 * @param record the ban to remove
+	 */
+	public void remove(BanRecord record) {
+		final BanRecord removed = this.removeIfIndexed(record);
+		if (removed != null) this.kickMessageCache.invalidate(removed);
+		if (record.getType() == BanRecord.Type.TEMPORARY) this.banExpiryQueue.cancel(record);
+	}
+
+	public int size() {
+		return this.bans.size();
+	}
+
+	private void fireBanAdded(BanRecord record) {
+		for (ChangeListener listener : this.changeListeners) {
+			listener.onBanAdded(record);
+		}
+	}
+
+	private void fireBanRemoved(BanRecord record) {
+		for (ChangeListener listener : this.changeListeners) {
+			listener.onBanRemoved(record);
+		}
+	}
+
+	private BanRecord index(BanRecord record) {
+		logger.log(Level.FINEST, "Indexing active ban for {0}.", record.getPlayer().getName());
+		return this.bans.put(normalise(record.getPlayer().getName()), record);
+	}
+
+	private BanRecord removeIfIndexed(BanRecord record) {
+		final String key = normalise(record.getPlayer().getName());
+		final BanRecord indexed = this.bans.get(key);
+		if (indexed != null && isSameBan(indexed, record) && this.bans.remove(key, indexed)) {
+			this.fireBanRemoved(indexed);
+			return indexed;
+		}
+		return null;
+	}
+
+}
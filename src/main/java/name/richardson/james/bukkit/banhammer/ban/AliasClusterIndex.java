@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * AliasClusterIndex.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * An in-memory index of clusters of player names which are aliases of each other.
+ * <p/>
+ * Clusters are stored as a disjoint set so associating two names and finding the cluster a name belongs to both
+ * take near constant time. Aliases are transitive; if A is an alias of B and B is an alias of C then A, B and C
+ * all belong to the same cluster. Each cluster keeps a count of its members who have an active ban so checking if
+ * a player has a banned alias does not require looking at every member.
+ */
+public class AliasClusterIndex implements ActiveBanIndex.ChangeListener {
+
+	private final ActiveBanIndex activeBanIndex;
+	private final Logger logger = PluginLoggerFactory.getLogger(AliasClusterIndex.class);
+	private final Map<String, Node> nodes = new HashMap<String, Node>();
+
+	public AliasClusterIndex(ActiveBanIndex activeBanIndex) {
+		this.activeBanIndex = activeBanIndex;
+		activeBanIndex.addChangeListener(this);
+	}
+
+	private static Node find(Node node) {
+		while (node.parent != node) {
+			// path halving
+			node.parent = node.parent.parent;
+			node = node.parent;
+		}
+		return node;
+	}
+
+	private static String normalise(String playerName) {
+		return playerName.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Associate a player with their aliases.
+	 *
+	 * @param playerName the name of the player
+	 * @param aliases the names of the aliases of the player
+	 */
+	public synchronized void associate(String playerName, Collection<String> aliases) {
+		final Node node = this.getNode(playerName);
+		for (String alias : aliases) {
+			this.union(node, this.getNode(alias));
+		}
+	}
+
+	/**
+	 * Check if a player belongs to a cluster, including one of their own if they have no aliases.
+	 *
+	 * @param playerName the name of the player
+	 * @return true if the player has been indexed
+	 */
+	public synchronized boolean contains(String playerName) {
+		return this.nodes.containsKey(normalise(playerName));
+	}
+
+	/**
+	 * Get the names of every alias of a player who has an active ban.
+	 *
+	 * @param playerName the name of the player
+	 * @return the names of the banned aliases, not including the player
+	 */
+	public synchronized List<String> getBannedAliases(String playerName) {
+		final List<String> aliases = new ArrayList<String>();
+		final Node node = this.nodes.get(normalise(playerName));
+		if (node == null) return aliases;
+		final Node root = find(node);
+		if (root.bannedMembers == 0) return aliases;
+		for (Node member : root.members) {
+			if (member.banned && member != node && !member.removed) aliases.add(member.playerName);
+		}
+		return aliases;
+	}
+
+	/**
+	 * Check if any of the aliases of a player have an active ban.
+	 *
+	 * @param playerName the name of the player
+	 * @return true if another member of the player's cluster is banned
+	 */
+	public synchronized boolean hasBannedAlias(String playerName) {
+		final Node node = this.nodes.get(normalise(playerName));
+		if (node == null) return false;
+		return find(node).bannedMembers > (node.banned ? 1 : 0);
+	}
+
+	@Override
+	public synchronized void onBanAdded(BanRecord record) {
+		this.setBanned(record.getPlayer().getName(), true);
+	}
+
+	@Override
+	public synchronized void onBanRemoved(BanRecord record) {
+		this.setBanned(record.getPlayer().getName(), false);
+	}
+
+	/**
+	 * Remove a player from their cluster.
+	 * <p/>
+	 * A disjoint set can not be split so any other members which were only connected through this player remain
+	 * in the same cluster until the index is rebuilt.
+	 *
+	 * @param playerName the name of the player
+	 */
+	public synchronized void remove(String playerName) {
+		final Node node = this.nodes.remove(normalise(playerName));
+		if (node == null) return;
+		this.setBanned(node, false);
+		node.removed = true;
+	}
+
+	/**
+	 * Replace every cluster with those formed by the associations provided.
+	 *
+	 * @param associations a map of player names to the names of their aliases
+	 */
+	public synchronized void rebuild(Map<String, ? extends Collection<String>> associations) {
+		this.nodes.clear();
+		for (Map.Entry<String, ? extends Collection<String>> entry : associations.entrySet()) {
+			this.associate(entry.getKey(), entry.getValue());
+		}
+		logger.log(Level.FINE, "Indexed aliases of {0} players.", this.nodes.size());
+	}
+
+	public synchronized int size() {
+		return this.nodes.size();
+	}
+
+	private Node getNode(String playerName) {
+		final String key = normalise(playerName);
+		Node node = this.nodes.get(key);
+		if (node == null) {
+			node = new Node(key, this.activeBanIndex.contains(playerName));
+			this.nodes.put(key, node);
+		}
+		return node;
+	}
+
+	private void setBanned(String playerName, boolean banned) {
+		final Node node = this.nodes.get(normalise(playerName));
+		if (node != null) this.setBanned(node, banned);
+	}
+
+	private void setBanned(Node node, boolean banned) {
+		if (node.banned == banned) return;
+		node.banned = banned;
+		find(node).bannedMembers += banned ? 1 : -1;
+	}
+
+	private void union(Node a, Node b) {
+		Node rootA = find(a);
+		Node rootB = find(b);
+		if (rootA == rootB) return;
+		// attach the smaller cluster to the larger one
+		if (rootA.members.size() < rootB.members.size()) {
+			final Node swap = rootA;
+			rootA = rootB;
+			rootB = swap;
+		}
+		rootB.parent = rootA;
+		rootA.members.addAll(rootB.members);
+		rootA.bannedMembers += rootB.bannedMembers;
+		rootB.members = null;
+	}
+
+	/**
+	 * A player in a cluster. Only the root node of a cluster keeps track of its members.
+	 */
+	private static final class Node {
+
+		private final String playerName;
+
+		private boolean banned;
+		private int bannedMembers;
+		private List<Node> members = new ArrayList<Node>(1);
+		private Node parent = this;
+		private boolean removed;
+
+		private Node(String playerName, boolean banned) {
+			this.playerName = playerName;
+			this.banned = banned;
+			this.bannedMembers = banned ? 1 : 0;
+			this.members.add(this);
+		}
+
+	}
+
+}
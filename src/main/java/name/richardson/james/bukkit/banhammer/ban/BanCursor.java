@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanCursor.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.sql.Timestamp;
+
+/**
+ * The position of a ban in a listing ordered from newest to oldest.
+ * <p/>
+ * Listings continue from a cursor by seeking past it on the (created_at, id) index, so every page costs the same
+ * however far into the listing it is.
+ */
+public final class BanCursor {
+
+	private final Timestamp createdAt;
+	private final int id;
+
+	public BanCursor(Timestamp createdAt, int id) {
+		if (createdAt == null) throw new IllegalArgumentException();
+		this.createdAt = createdAt;
+		this.id = id;
+	}
+
+	/**
+	 * Get the cursor which continues a listing after a ban.
+	 *
+	 * @param record the last ban listed
+	 * @return the cursor positioned after the ban
+	 */
+	public static BanCursor after(BanRecord record) {
+		return new BanCursor(record.getCreatedAt(), record.getId());
+	}
+
+	public Timestamp getCreatedAt() {
+		return createdAt;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+}
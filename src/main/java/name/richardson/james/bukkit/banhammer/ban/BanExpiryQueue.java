@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanExpiryQueue.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue of temporary bans ordered by the time they expire.
+ * <p/>
+ * Bans can only be taken from the queue once they have expired which allows them to be marked as expired in
+ * batches rather than having their expiry time checked every time they are used.
+ */
+public class BanExpiryQueue {
+
+	private final DelayQueue<ScheduledExpiry> expiries = new DelayQueue<ScheduledExpiry>();
+
+	/**
+	 * Remove a ban from the queue.
+	 *
+	 * @param record the ban to remove
+	 */
+	public void cancel(BanRecord record) {
+		final Iterator<ScheduledExpiry> i = this.expiries.iterator();
+		while (i.hasNext()) {
+			if (ActiveBanIndex.isSameBan(i.next().record, record)) i.remove();
+		}
+	}
+
+	public void clear() {
+		this.expiries.clear();
+	}
+
+	/**
+	 * Remove bans which have expired from the queue.
+	 *
+	 * @param limit the maximum number of bans to remove
+	 * @return the bans which have expired, oldest first
+	 */
+	public List<BanRecord> drainExpired(int limit) {
+		final List<ScheduledExpiry> expired = new ArrayList<ScheduledExpiry>();
+		this.expiries.drainTo(expired, limit);
+		final List<BanRecord> records = new ArrayList<BanRecord>(expired.size());
+		for (ScheduledExpiry expiry : expired) {
+			records.add(expiry.record);
+		}
+		return records;
+	}
+
+	/**
+	 * Add a temporary ban to the queue.
+	 *
+	 * @param record the ban to add
+	 */
+	public void schedule(BanRecord record) {
+		if (record.getType() != BanRecord.Type.TEMPORARY) throw new IllegalArgumentException();
+		this.expiries.add(new ScheduledExpiry(record));
+	}
+
+	public int size() {
+		return this.expiries.size();
+	}
+
+	private static final class ScheduledExpiry implements Delayed {
+
+		private final long expiresAt;
+		private final BanRecord record;
+
+		private ScheduledExpiry(BanRecord record) {
+			this.record = record;
+			this.expiresAt = record.getExpiresAt().getTime();
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			final long difference = this.getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
+			return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+		}
+
+	}
+
+}
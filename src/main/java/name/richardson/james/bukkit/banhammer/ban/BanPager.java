@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanPager.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pages through listings of bans on behalf of command senders.
+ * <p/>
+ * The cursor at the end of each page a sender has seen is remembered, so asking for the next page is a single
+ * seek rather than an OFFSET scan over every earlier page.
+ */
+public class BanPager {
+
+	/** The maximum number of listings which cursors are remembered for. */
+	public static final int MAXIMUM_LISTINGS = 256;
+
+	private final ConcurrentMap<String, List<BanCursor>> listings = new ConcurrentHashMap<String, List<BanCursor>>();
+
+	/**
+	 * Get a page of a listing.
+	 * <p/>
+	 * The first page always starts from the newest ban, forgetting any cursors remembered for the listing.
+	 *
+	 * @param listing identifies the sender and the listing they are paging through
+	 * @param page the page to get, starting from 1
+	 * @param size the number of bans on each page
+	 * @param query the query which lists the bans
+	 * @return the bans on the page, which is empty if the listing does not have that many pages
+	 */
+	public List<BanRecord> getPage(String listing, int page, int size, Query query) {
+		if (page < 1 || size < 1) throw new IllegalArgumentException();
+		final String key = listing + ":" + size;
+		List<BanCursor> cursors = this.listings.get(key);
+		if (cursors == null || page == 1) {
+			if (this.listings.size() >= MAXIMUM_LISTINGS) this.listings.clear();
+			cursors = Collections.synchronizedList(new ArrayList<BanCursor>());
+			this.listings.put(key, cursors);
+		}
+		// start from the furthest page already seen and seek forward one page at a time
+		int current = Math.min(page - 1, cursors.size());
+		List<BanRecord> bans;
+		do {
+			final BanCursor after = (current == 0) ? null : cursors.get(current - 1);
+			bans = query.list(size, after);
+			if (bans.isEmpty()) return bans;
+			current++;
+			if (cursors.size() < current) cursors.add(BanCursor.after(bans.get(bans.size() - 1)));
+		} while (current < page);
+		return bans;
+	}
+
+	/**
+	 * A listing of bans ordered from newest to oldest.
+	 */
+	public interface Query {
+
+		/**
+		 * List bans older than a cursor.
+		 *
+		 * @param limit the maximum number of bans to list
+		 * @param after the cursor to list bans after, or null to start from the newest ban
+		 * @return the bans
+		 */
+		List<BanRecord> list(int limit, BanCursor after);
+
+	}
+
+}
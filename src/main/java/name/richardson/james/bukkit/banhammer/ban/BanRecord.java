@@ -82,9 +82,9 @@ public class BanRecord {
 	@Temporal(TemporalType.TIMESTAMP)
 	private Timestamp createdAt;
 	/**
-	 * The creator.
+	 * The creator. Creators are always saved before their bans so saving a ban only stores the creator's id.
 	 */
-	@ManyToOne(targetEntity = PlayerRecord.class, fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST})
+	@ManyToOne(targetEntity = PlayerRecord.class, fetch = FetchType.EAGER)
 	@PrimaryKeyJoinColumn(name = "creatorId", referencedColumnName = "id")
 	private PlayerRecord creator;
 	/**
@@ -175,6 +175,9 @@ public class BanRecord {
 
 	/**
 	 * Gets the state.
+	 * <p/>
+	 * Temporary bans are marked as expired shortly after they expire. Until then they are reported as expired if
+	 * their expiry time has passed.
 	 *
 	 * @return the state
 	 */
@@ -183,6 +186,15 @@ public class BanRecord {
 		return this.state;
 	}
 
+	/**
+	 * Gets the state as it is stored, without checking if the ban has expired.
+	 *
+	 * @return the stored state
+	 */
+	State getStoredState() {
+		return this.state;
+	}
+
 	/**
 	 * Gets the type.
 	 *
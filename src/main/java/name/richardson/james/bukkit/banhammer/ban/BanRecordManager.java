@@ -1,18 +1,58 @@
 package name.richardson.james.bukkit.banhammer.ban;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.QueryResultVisitor;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseWriter;
+import name.richardson.james.bukkit.banhammer.persistence.DirectDatabaseWriter;
 
 public class BanRecordManager {
 
-	private EbeanServer database;
+	private final ListeningExecutorService executor;
+	private final BanStore store;
 
 	public BanRecordManager(EbeanServer database) {
-		if (database == null) throw new IllegalArgumentException();
-		this.database = database;
+		this(database, MoreExecutors.sameThreadExecutor());
+	}
+
+	/**
+	 * @param database the database to store bans in
+	 * @param executor the executor which runs the asynchronous variants of each method
+	 */
+	public BanRecordManager(EbeanServer database, ListeningExecutorService executor) {
+		this(database, executor, new DirectDatabaseWriter(database));
+	}
+
+	/**
+	 * @param database the database to store bans in
+	 * @param executor the executor which runs the asynchronous variants of each method
+	 * @param writer the writer which makes every change to the database
+	 */
+	public BanRecordManager(EbeanServer database, ListeningExecutorService executor, DatabaseWriter writer) {
+		this(new EbeanBanStore(database, writer), executor);
+	}
+
+	/**
+	 * @param store the store to keep bans in
+	 * @param executor the executor which runs the asynchronous variants of each method
+	 */
+	public BanRecordManager(BanStore store, ListeningExecutorService executor) {
+		if (store == null || executor == null) throw new IllegalArgumentException();
+		this.store = store;
+		this.executor = executor;
 	}
 
 	public void delete(BanRecord ban) {
@@ -20,24 +60,210 @@ public class BanRecordManager {
 	}
 
 	public int delete(Collection<BanRecord> bans) {
-		return this.database.delete(bans);
+		return this.store.deleteBans(bans);
+	}
+
+	public ListenableFuture<Integer> deleteAsync(final Collection<BanRecord> bans) {
+		return this.executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return delete(bans);
+			}
+		});
+	}
+
+	/**
+	 * Find the active bans of several players at once.
+	 *
+	 * @param playerNames the names of the players
+	 * @return the active bans, keyed by the normalised name of the banned player
+	 */
+	public Map<String, BanRecord> findActive(Collection<String> playerNames) {
+		final Set<String> normalisedNames = new HashSet<String>(playerNames.size());
+		for (String playerName : playerNames) {
+			normalisedNames.add(PlayerRecord.normalise(playerName));
+		}
+		final Map<String, BanRecord> records = new HashMap<String, BanRecord>();
+		for (BanRecord record : this.store.findActiveBans(normalisedNames)) {
+			records.put(record.getPlayer().getNormalisedName(), record);
+		}
+		return records;
 	}
 
 	public boolean save(BanRecord record) {
-		if (record.getPlayer().isBanned()) return false;
-		this.database.save(record);
-		return true;
+		return !this.save(Arrays.asList(record)).isEmpty();
+	}
+
+	public ListenableFuture<Boolean> saveAsync(final BanRecord record) {
+		return this.executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return save(record);
+			}
+		});
+	}
+
+	/**
+	 * Save several bans at once.
+	 * <p/>
+	 * Bans of players who are already banned are not saved. The rest are saved together. Existing bans are found
+	 * with a single query rather than loading the bans of each player.
+	 *
+	 * @param records the bans to save
+	 * @return the bans which were saved
+	 */
+	public List<BanRecord> save(Collection<BanRecord> records) {
+		final Set<String> playerNames = new HashSet<String>(records.size());
+		for (BanRecord record : records) {
+			playerNames.add(record.getPlayer().getName());
+		}
+		final Map<String, BanRecord> active = this.findActive(playerNames);
+		final List<BanRecord> unbanned = new ArrayList<BanRecord>(records.size());
+		for (BanRecord record : records) {
+			if (active.containsKey(PlayerRecord.normalise(record.getPlayer().getName()))) continue;
+			unbanned.add(record);
+		}
+		this.store.insertBans(unbanned);
+		return unbanned;
+	}
+
+	public ListenableFuture<List<BanRecord>> saveAsync(final Collection<BanRecord> records) {
+		return this.executor.submit(new Callable<List<BanRecord>>() {
+			@Override
+			public List<BanRecord> call() {
+				return save(records);
+			}
+		});
+	}
+
+	/**
+	 * Pardon several bans at once.
+	 *
+	 * @param records the bans to pardon
+	 * @return the number of bans pardoned
+	 */
+	public int pardon(Collection<BanRecord> records) {
+		return this.store.changeBanStates(records, BanRecord.State.PARDONED);
+	}
+
+	public ListenableFuture<Integer> pardonAsync(final Collection<BanRecord> records) {
+		return this.executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return pardon(records);
+			}
+		});
+	}
+
+	/**
+	 * Visit every ban without loading them all into memory.
+	 *
+	 * @param visitor the visitor to pass each ban to, which returns false to stop visiting
+	 */
+	public void visit(QueryResultVisitor<BanRecord> visitor) {
+		this.store.visitBans(visitor);
+	}
+
+	/**
+	 * Mark bans as expired.
+	 *
+	 * @param bans the bans which have expired
+	 * @return the number of bans updated
+	 */
+	public int expire(Collection<BanRecord> bans) {
+		final List<BanRecord> saved = new ArrayList<BanRecord>(bans.size());
+		for (BanRecord ban : bans) {
+			// bans waiting in the write behind queue will be saved and counted with their new state
+			if (ban.getId() != 0) {
+				saved.add(ban);
+			} else {
+				ban.setState(BanRecord.State.EXPIRED);
+			}
+		}
+		return this.store.changeBanStates(saved, BanRecord.State.EXPIRED);
 	}
 
-	public List<BanRecord> list() {
-		return this.database.find(BanRecord.class).findList();
+	/**
+	 * List the bans which are stored as active.
+	 * <p/>
+	 * This includes temporary bans which have expired but have not been marked as expired yet.
+	 *
+	 * @return the bans stored as active
+	 */
+	public List<BanRecord> listActive() {
+		return this.store.listBans(BanRecord.State.NORMAL);
+	}
+
+	public ListenableFuture<List<BanRecord>> listActiveAsync() {
+		return this.executor.submit(new Callable<List<BanRecord>>() {
+			@Override
+			public List<BanRecord> call() {
+				return listActive();
+			}
+		});
 	}
 
 	public List<BanRecord> list(int limit) {
-		return this.database.find(BanRecord.class).setMaxRows(limit).orderBy().desc("createdAt").findList();
+		return this.list(limit, null);
+	}
+
+	/**
+	 * List bans from newest to oldest, continuing from a cursor.
+	 *
+	 * @param limit the maximum number of bans to list
+	 * @param after the cursor to list bans after, or null to start from the newest ban
+	 * @return the bans
+	 */
+	public List<BanRecord> list(int limit, BanCursor after) {
+		return this.store.listBans(null, limit, after);
+	}
+
+	/**
+	 * List the bans of a player from newest to oldest, continuing from a cursor.
+	 *
+	 * @param player the player who was banned
+	 * @param limit the maximum number of bans to list
+	 * @param after the cursor to list bans after, or null to start from the newest ban
+	 * @return the bans
+	 */
+	public List<BanRecord> list(PlayerRecord player, int limit, BanCursor after) {
+		return this.store.listBans(player, limit, after);
+	}
+
+	/**
+	 * Get the counts of every ban by type and state.
+	 *
+	 * @return the statistics for all bans
+	 */
+	public BanStatistics getStatistics() {
+		return this.store.getStatistics(null);
+	}
+
+	/**
+	 * Get the counts of the bans made by a player by type and state.
+	 *
+	 * @param creator the player who made the bans
+	 * @return the statistics for the bans made by the player
+	 */
+	public BanStatistics getStatistics(PlayerRecord creator) {
+		return this.store.getStatistics(creator);
+	}
+
+	public BanStore getStore() {
+		return this.store;
 	}
 
 	public int count() {
-		return this.database.find(BanRecord.class).findRowCount();
+		return this.store.countBans();
 	}
+
+	/**
+	 * Recompute any counts of bans kept by the store to correct any drift.
+	 *
+	 * @return the number of counts written
+	 */
+	public int repairStatistics() {
+		return this.store.repairStatistics();
+	}
+
 }
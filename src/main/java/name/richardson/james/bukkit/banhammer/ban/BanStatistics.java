@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanStatistics.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+/**
+ * Counts of bans by type and state.
+ * <p/>
+ * Statistics are read from the statistics table so the bans themselves never need to be loaded.
+ */
+public class BanStatistics {
+
+	private final int[][] counts = new int[BanRecord.Type.values().length][BanRecord.State.values().length];
+	private int expired;
+	private int normal;
+	private int pardoned;
+	private int permanent;
+	private int temporary;
+	private int total;
+
+	/**
+	 * Add a number of bans which share the same type and state.
+	 *
+	 * @param type the type of the bans
+	 * @param state the state of the bans
+	 * @param count the number of bans
+	 */
+	public void add(BanRecord.Type type, BanRecord.State state, int count) {
+		counts[type.ordinal()][state.ordinal()] += count;
+		switch (type) {
+			case PERMANENT:
+				permanent += count;
+				break;
+			case TEMPORARY:
+				temporary += count;
+				break;
+		}
+		switch (state) {
+			case NORMAL:
+				normal += count;
+				break;
+			case EXPIRED:
+				expired += count;
+				break;
+			case PARDONED:
+				pardoned += count;
+				break;
+		}
+		total += count;
+	}
+
+	/**
+	 * Get the number of bans which have both a type and a state.
+	 *
+	 * @param type the type of the bans
+	 * @param state the state of the bans
+	 * @return the number of bans
+	 */
+	public int getCount(BanRecord.Type type, BanRecord.State state) {
+		return counts[type.ordinal()][state.ordinal()];
+	}
+
+	public int getExpiredCount() {
+		return expired;
+	}
+
+	public int getNormalCount() {
+		return normal;
+	}
+
+	public int getPardonedCount() {
+		return pardoned;
+	}
+
+	public int getPermanentCount() {
+		return permanent;
+	}
+
+	public int getTemporaryCount() {
+		return temporary;
+	}
+
+	public int getTotalCount() {
+		return total;
+	}
+
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanStatisticsManager.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.TxRunnable;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseWriter;
+import name.richardson.james.bukkit.banhammer.persistence.DirectDatabaseWriter;
+
+/**
+ * Maintains a table of ban counts for each creator and for the server as a whole.
+ * <p/>
+ * Counts are changed in the same transaction as the bans they describe, so reading them is a primary key lookup
+ * rather than a scan of every ban. Counts follow the state stored for each ban, so a temporary ban is counted as
+ * expired once {@link BanRecordManager#expire} has marked it. If the counts ever drift they can be recomputed with
+ * {@link #repair()}.
+ */
+public class BanStatisticsManager {
+
+	/** The creator id used for the counts of every ban. */
+	public static final int GLOBAL = 0;
+
+	public static final String TABLE = "banhammer_statistics";
+
+	private static final String REPAIR_QUERY = "SELECT creator_id, state, CASE WHEN expires_at IS NULL THEN 0 ELSE 1 END AS temporary, " +
+		"COUNT(*) AS bans FROM banhammer_bans GROUP BY creator_id, state, CASE WHEN expires_at IS NULL THEN 0 ELSE 1 END";
+
+	private final EbeanServer database;
+	private final Logger logger = PluginLoggerFactory.getLogger(BanStatisticsManager.class);
+	private final DatabaseWriter writer;
+
+	public BanStatisticsManager(EbeanServer database) {
+		this(database, new DirectDatabaseWriter(database));
+	}
+
+	/**
+	 * @param database the database to store counts in
+	 * @param writer the writer which makes changes when the counts are repaired
+	 */
+	public BanStatisticsManager(EbeanServer database, DatabaseWriter writer) {
+		if (database == null || writer == null) throw new IllegalArgumentException();
+		this.database = database;
+		this.writer = writer;
+	}
+
+	/**
+	 * Convert a state read directly from the banhammer_bans table, which is stored as either its ordinal or its name.
+	 */
+	static BanRecord.State toState(Object value) {
+		if (value instanceof Number) return BanRecord.State.values()[((Number) value).intValue()];
+		return BanRecord.State.valueOf(String.valueOf(value));
+	}
+
+	/**
+	 * Start collecting changes to the counts, to be applied in the transaction which changes the bans.
+	 *
+	 * @return the new changes
+	 */
+	public Changes changes() {
+		return new Changes();
+	}
+
+	public BanStatistics getStatistics() {
+		return this.getStatistics(GLOBAL);
+	}
+
+	public BanStatistics getStatistics(PlayerRecord creator) {
+		return this.getStatistics(creator.getId());
+	}
+
+	/**
+	 * Recompute every count from the bans themselves.
+	 * <p/>
+	 * The bans are counted in the same transaction which rewrites the table, so bans changed in the meantime are
+	 * not lost.
+	 *
+	 * @return the number of counts written
+	 */
+	public int repair() {
+		final Map<Key, Integer> counts = new HashMap<Key, Integer>();
+		this.writer.execute(new TxRunnable() {
+			@Override
+			public void run() {
+				counts.clear();
+				for (SqlRow row : database.createSqlQuery(REPAIR_QUERY).findList()) {
+					final BanRecord.Type type = (row.getInteger("temporary") == 1) ? BanRecord.Type.TEMPORARY : BanRecord.Type.PERMANENT;
+					final BanRecord.State state = toState(row.get("state"));
+					final int bans = row.getInteger("bans");
+					increment(counts, new Key(row.getInteger("creator_id"), type, state), bans);
+					increment(counts, new Key(GLOBAL, type, state), bans);
+				}
+				database.createSqlUpdate("DELETE FROM " + TABLE).execute();
+				for (Map.Entry<Key, Integer> count : counts.entrySet()) {
+					insert(count.getKey(), count.getValue());
+				}
+			}
+		});
+		logger.log(Level.FINE, "Repaired {0} ban statistics.", counts.size());
+		return counts.size();
+	}
+
+	private static void increment(Map<Key, Integer> counts, Key key, int delta) {
+		final Integer count = counts.get(key);
+		counts.put(key, (count == null) ? delta : count + delta);
+	}
+
+	private BanStatistics getStatistics(int creatorId) {
+		final BanStatistics statistics = new BanStatistics();
+		final String sql = "SELECT ban_type, ban_state, bans FROM " + TABLE + " WHERE creator_id = :creator";
+		for (SqlRow row : this.database.createSqlQuery(sql).setParameter("creator", creatorId).findList()) {
+			final BanRecord.Type type = BanRecord.Type.values()[row.getInteger("ban_type")];
+			final BanRecord.State state = BanRecord.State.values()[row.getInteger("ban_state")];
+			statistics.add(type, state, row.getInteger("bans"));
+		}
+		return statistics;
+	}
+
+	private void insert(Key key, int bans) {
+		final String sql = "INSERT INTO " + TABLE + " (creator_id, ban_type, ban_state, bans) VALUES (:creator, :type, :state, :bans)";
+		this.database.createSqlUpdate(sql).setParameter("creator", key.creatorId).setParameter("type", key.type.ordinal()).setParameter("state", key.state.ordinal()).setParameter("bans", bans).execute();
+	}
+
+	private static Savepoint setSavepoint(Connection connection) {
+		try {
+			return connection.setSavepoint();
+		} catch (SQLException e) {
+			// the failed insert is then left in the transaction, which most databases allow
+			return null;
+		}
+	}
+
+	private static void rollback(Connection connection, Savepoint savepoint) {
+		if (savepoint == null) return;
+		try {
+			connection.rollback(savepoint);
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		}
+	}
+
+	private int increase(Key key, int delta) {
+		final String sql = "UPDATE " + TABLE + " SET bans = bans + :delta WHERE creator_id = :creator AND ban_type = :type AND ban_state = :state";
+		return this.database.createSqlUpdate(sql).setParameter("delta", delta).setParameter("creator", key.creatorId).setParameter("type", key.type.ordinal()).setParameter("state", key.state.ordinal()).execute();
+	}
+
+	/**
+	 * Change a count, creating it if it does not exist yet.
+	 * <p/>
+	 * Two transactions can both find a count missing, such as when a new creator makes two bans at once. The one
+	 * which inserts second fails with a duplicate key, so its insert is rolled back to a savepoint and the count
+	 * the other transaction created is updated instead. This keeps the ban which is being saved from failing.
+	 */
+	private void update(Key key, int delta) {
+		if (this.increase(key, delta) > 0) return;
+		final Connection connection = this.database.currentTransaction().getConnection();
+		final Savepoint savepoint = setSavepoint(connection);
+		try {
+			this.insert(key, delta);
+		} catch (PersistenceException e) {
+			rollback(connection, savepoint);
+			if (this.increase(key, delta) == 0) throw e;
+			logger.log(Level.FINE, "Ban statistics for creator {0} were created by another transaction.", key.creatorId);
+		}
+	}
+
+	/**
+	 * Changes to the counts which are applied when run inside a transaction.
+	 */
+	public final class Changes implements TxRunnable {
+
+		private final Map<Key, Integer> deltas = new HashMap<Key, Integer>();
+
+		private Changes() {}
+
+		/**
+		 * Count a ban which is being created.
+		 */
+		public Changes add(BanRecord record) {
+			return this.change(record, record.getStoredState(), 1);
+		}
+
+		/**
+		 * Move a ban from the state it is stored with to a new one.
+		 */
+		public Changes move(BanRecord record, BanRecord.State state) {
+			this.change(record, record.getStoredState(), -1);
+			return this.change(record, state, 1);
+		}
+
+		/**
+		 * Stop counting a ban which is being deleted.
+		 */
+		public Changes remove(BanRecord record) {
+			return this.change(record, record.getStoredState(), -1);
+		}
+
+		@Override
+		public void run() {
+			for (Map.Entry<Key, Integer> delta : this.deltas.entrySet()) {
+				if (delta.getValue() != 0) update(delta.getKey(), delta.getValue());
+			}
+		}
+
+		private Changes change(BanRecord record, BanRecord.State state, int delta) {
+			increment(this.deltas, new Key(GLOBAL, record.getType(), state), delta);
+			increment(this.deltas, new Key(record.getCreator().getId(), record.getType(), state), delta);
+			return this;
+		}
+
+	}
+
+	private static final class Key {
+
+		private final int creatorId;
+		private final BanRecord.State state;
+		private final BanRecord.Type type;
+
+		private Key(int creatorId, BanRecord.Type type, BanRecord.State state) {
+			this.creatorId = creatorId;
+			this.type = type;
+			this.state = state;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) return false;
+			final Key key = (Key) object;
+			return this.creatorId == key.creatorId && this.type == key.type && this.state == key.state;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * this.creatorId + this.type.ordinal()) * 31 + this.state.ordinal();
+		}
+
+	}
+
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanStore.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.avaje.ebean.QueryResultVisitor;
+
+/**
+ * Stores players and their bans on behalf of the record managers.
+ * <p/>
+ * A store only performs the operations the plugin needs, so it can be backed by something other than a database.
+ * The record managers keep the rules about what may be saved; a store just reads and writes what it is given. Every
+ * method must be safe to call from several threads at once.
+ */
+public interface BanStore {
+
+	/**
+	 * The kinds of store which can be chosen in database.yml.
+	 */
+	public enum Type {
+
+		/**
+		 * Store players and bans in the database.
+		 */
+		EBEAN,
+
+		/**
+		 * Store players and bans in memory, saving a snapshot of them to a file.
+		 */
+		MEMORY
+	}
+
+	/**
+	 * Change the stored state of several bans, changing the state of each record as well.
+	 *
+	 * @param bans the bans to change
+	 * @param state the new state
+	 * @return the number of bans changed
+	 */
+	int changeBanStates(Collection<BanRecord> bans, BanRecord.State state);
+
+	int countBans();
+
+	int countPlayers();
+
+	/**
+	 * Delete several bans.
+	 *
+	 * @param bans the bans to delete
+	 * @return the number of bans deleted
+	 */
+	int deleteBans(Collection<BanRecord> bans);
+
+	/**
+	 * Delete several players along with their bans.
+	 *
+	 * @param players the players to delete
+	 * @return the number of players deleted
+	 */
+	int deletePlayers(Collection<PlayerRecord> players);
+
+	/**
+	 * Find the active bans of several players at once, with their players and creators.
+	 *
+	 * @param normalisedNames the normalised names of the players
+	 * @return the active bans of the players which are banned
+	 */
+	List<BanRecord> findActiveBans(Collection<String> normalisedNames);
+
+	/**
+	 * Find a player by their normalised name.
+	 *
+	 * @param normalisedName the normalised name of the player
+	 * @return the player, or null if they do not exist
+	 */
+	PlayerRecord findPlayer(String normalisedName);
+
+	/**
+	 * Find several players by their normalised names.
+	 *
+	 * @param normalisedNames the normalised names of the players
+	 * @return the players which exist
+	 */
+	List<PlayerRecord> findPlayers(Collection<String> normalisedNames);
+
+	/**
+	 * Get the counts of bans by type and stored state.
+	 *
+	 * @param creator the player who made the bans, or null to count every ban
+	 * @return the statistics for the bans
+	 */
+	BanStatistics getStatistics(PlayerRecord creator);
+
+	/**
+	 * Insert several new bans, inserting their players and creators first if they have not been stored yet.
+	 *
+	 * @param bans the bans to insert
+	 * @return the number of bans inserted
+	 */
+	int insertBans(Collection<BanRecord> bans);
+
+	/**
+	 * List the bans with a stored state.
+	 *
+	 * @param state the state the bans are stored with
+	 * @return the bans
+	 */
+	List<BanRecord> listBans(BanRecord.State state);
+
+	/**
+	 * List bans from newest to oldest, continuing from a cursor.
+	 *
+	 * @param player the player who was banned, or null to list the bans of every player
+	 * @param limit the maximum number of bans to list
+	 * @param after the cursor to list bans after, or null to start from the newest ban
+	 * @return the bans
+	 */
+	List<BanRecord> listBans(PlayerRecord player, int limit, BanCursor after);
+
+	/**
+	 * List the names of every player who has been banned at least once.
+	 *
+	 * @return the names of the players
+	 */
+	List<String> listBannedPlayerNames();
+
+	/**
+	 * List the names of every player who is currently banned.
+	 *
+	 * @return the names of the players
+	 */
+	List<String> listCurrentlyBannedPlayerNames();
+
+	/**
+	 * List the names of players whose normalised name starts with a prefix.
+	 *
+	 * @param prefix the normalised prefix to match
+	 * @param status the status the players must have
+	 * @param limit the maximum number of names to return
+	 * @return the names of the players in alphabetical order
+	 */
+	List<String> listPlayerNames(String prefix, PlayerRecordManager.PlayerStatus status, int limit);
+
+	/**
+	 * List the players whose normalised name starts with a prefix.
+	 *
+	 * @param prefix the normalised prefix to match
+	 * @param status the status the players must have
+	 * @return the players
+	 */
+	List<PlayerRecord> listPlayers(String prefix, PlayerRecordManager.PlayerStatus status);
+
+	/**
+	 * Recompute any counts the store keeps of its bans.
+	 *
+	 * @return the number of counts written
+	 */
+	int repairStatistics();
+
+	/**
+	 * Save several players, inserting those which have not been stored yet.
+	 *
+	 * @param players the players to save
+	 * @return the number of players saved
+	 * @throws javax.persistence.PersistenceException if a new player has the same normalised name as a stored one
+	 */
+	int savePlayers(Collection<PlayerRecord> players);
+
+	/**
+	 * Visit every ban without loading them all into memory at once.
+	 *
+	 * @param visitor the visitor to pass each ban to, which returns false to stop visiting
+	 */
+	void visitBans(QueryResultVisitor<BanRecord> visitor);
+
+	/**
+	 * Visit every player without loading them all into memory at once.
+	 *
+	 * @param visitor the visitor to pass each player to, which returns false to stop visiting
+	 */
+	void visitPlayers(QueryResultVisitor<PlayerRecord> visitor);
+
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanWriteBehindQueue.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * A bounded queue of bans waiting to be saved to the database.
+ * <p/>
+ * Bans are added to the queue with unsaved player records which only have a name. When the queue is flushed the
+ * player records are looked up, or created, and the bans are saved in batches. Batches which fail to save are put
+ * back at the front of the queue and retried a limited number of times. Bans which are abandoned are removed from
+ * the active ban index so players are not left banned by a ban which does not exist.
+ */
+public class BanWriteBehindQueue {
+
+	/** The maximum number of bans saved at once. */
+	public static final int BATCH_SIZE = 50;
+	/** The default number of bans which may wait to be saved. */
+	public static final int DEFAULT_CAPACITY = 1000;
+	/** The number of times saving a ban is attempted before it is abandoned. */
+	public static final int MAXIMUM_ATTEMPTS = 3;
+
+	private final ActiveBanIndex activeBanIndex;
+	private final BanRecordManager banRecordManager;
+	private final Logger logger = PluginLoggerFactory.getLogger(BanWriteBehindQueue.class);
+	private final BlockingDeque<PendingBan> pending;
+	private final PlayerRecordManager playerRecordManager;
+
+	public BanWriteBehindQueue(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, ActiveBanIndex activeBanIndex) {
+		this(playerRecordManager, banRecordManager, activeBanIndex, DEFAULT_CAPACITY);
+	}
+
+	public BanWriteBehindQueue(PlayerRecordManager playerRecordManager, BanRecordManager banRecordManager, ActiveBanIndex activeBanIndex, int capacity) {
+		this.playerRecordManager = playerRecordManager;
+		this.banRecordManager = banRecordManager;
+		this.activeBanIndex = activeBanIndex;
+		this.pending = new LinkedBlockingDeque<PendingBan>(capacity);
+	}
+
+	/**
+	 * Create a ban which has not been saved yet.
+	 *
+	 * @param playerName the name of the player to ban
+	 * @param creatorName the name of the player creating the ban
+	 * @return the ban
+	 */
+	public static BanRecord createBan(String playerName, String creatorName) {
+		final PlayerRecord player = new PlayerRecord();
+		player.setName(playerName);
+		final PlayerRecord creator = new PlayerRecord();
+		creator.setName(creatorName);
+		final BanRecord record = new BanRecord();
+		record.setPlayer(player);
+		record.setCreator(creator);
+		record.setState(BanRecord.State.NORMAL);
+		return record;
+	}
+
+	/**
+	 * Save every ban in the queue.
+	 * <p/>
+	 * This is intended to be called when the plugin is disabled. Bans which still can not be saved after being
+	 * retried are abandoned.
+	 */
+	public void drain() {
+		while (!this.pending.isEmpty()) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * Save the next batch of bans in the queue.
+	 *
+	 * @return the number of bans saved
+	 */
+	public synchronized int flush() {
+		final List<PendingBan> batch = new ArrayList<PendingBan>(BATCH_SIZE);
+		this.pending.drainTo(batch, BATCH_SIZE);
+		if (batch.isEmpty()) return 0;
+		try {
+			final List<BanRecord> records = this.resolve(batch);
+			final int saved = this.banRecordManager.save(records).size();
+			logger.log(Level.FINE, "Saved {0} queued bans.", saved);
+			return saved;
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Unable to save queued bans: {0}", e.getMessage());
+			this.retry(batch);
+			return 0;
+		}
+	}
+
+	/**
+	 * Add a ban to the queue.
+	 *
+	 * @param record the ban to save
+	 * @return false if the queue is full and the ban must be saved by the caller
+	 */
+	public boolean offer(BanRecord record) {
+		return this.pending.offerLast(new PendingBan(record));
+	}
+
+	public int size() {
+		return this.pending.size();
+	}
+
+	private List<BanRecord> resolve(List<PendingBan> batch) {
+		final Map<String, PlayerRecord> players = new HashMap<String, PlayerRecord>();
+		final List<BanRecord> records = new ArrayList<BanRecord>(batch.size());
+		for (PendingBan ban : batch) {
+			ban.record.setPlayer(this.resolve(players, ban.record.getPlayer()));
+			ban.record.setCreator(this.playerRecordManager.createCreator(ban.record.getCreator().getName()));
+			records.add(ban.record);
+		}
+		return records;
+	}
+
+	private PlayerRecord resolve(Map<String, PlayerRecord> players, PlayerRecord player) {
+		if (player.getId() != 0) return player;
+		final String key = player.getName().toLowerCase(Locale.ENGLISH);
+		PlayerRecord record = players.get(key);
+		if (record == null) {
+			record = this.playerRecordManager.create(player.getName());
+			players.put(key, record);
+		}
+		return record;
+	}
+
+	private void retry(List<PendingBan> batch) {
+		final ListIterator<PendingBan> i = batch.listIterator(batch.size());
+		while (i.hasPrevious()) {
+			final PendingBan ban = i.previous();
+			ban.attempts++;
+			if (ban.attempts >= MAXIMUM_ATTEMPTS || !this.pending.offerFirst(ban)) {
+				logger.log(Level.SEVERE, "Abandoned saving ban of {0}.", ban.record.getPlayer().getName());
+				this.activeBanIndex.remove(ban.record);
+			}
+		}
+	}
+
+	private static final class PendingBan {
+
+		private final BanRecord record;
+		private int attempts;
+
+		private PendingBan(BanRecord record) {
+			this.record = record;
+		}
+
+	}
+
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BannedPlayerFilter.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * A Bloom filter containing the name of every player who has been banned.
+ * <p/>
+ * If the filter does not contain a name then that player has definitely never been banned and the database does
+ * not need to be checked. The filter may return false positives but never false negatives. Until the filter has
+ * been built for the first time it reports that every player might have been banned.
+ */
+public class BannedPlayerFilter {
+
+	public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+	private static final int MINIMUM_EXPECTED_INSERTIONS = 1024;
+
+	private final double falsePositiveProbability;
+	private final Logger logger = PluginLoggerFactory.getLogger(BannedPlayerFilter.class);
+
+	private volatile Bits filter;
+	private Bits pending;
+
+	public BannedPlayerFilter() {
+		this(DEFAULT_FALSE_POSITIVE_PROBABILITY);
+	}
+
+	public BannedPlayerFilter(double falsePositiveProbability) {
+		if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) throw new IllegalArgumentException();
+		this.falsePositiveProbability = falsePositiveProbability;
+	}
+
+	private static String normalise(String playerName) {
+		return playerName.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Get the probability that {@link #mightContain(String)} will return true for a player who has never been banned.
+	 *
+	 * @return the current false positive rate, or 1 if the filter has not been built yet.
+	 */
+	public double getFalsePositiveRate() {
+		final Bits filter = this.filter;
+		return (filter == null) ? 1 : filter.getFalsePositiveRate();
+	}
+
+	public boolean mightContain(String playerName) {
+		final Bits filter = this.filter;
+		return filter == null || filter.mightContain(normalise(playerName));
+	}
+
+	public synchronized void put(String playerName) {
+		final String key = normalise(playerName);
+		if (this.filter != null) this.filter.put(key);
+		if (this.pending != null) this.pending.put(key);
+	}
+
+	/**
+	 * Rebuild the filter using the names of every player who has been banned.
+	 * <p/>
+	 * Names added while the filter is being rebuilt are added to both the current and the replacement filter so
+	 * none are lost when the filter is swapped.
+	 *
+	 * @param playerRecordManager the manager to load the names from
+	 */
+	public void rebuild(PlayerRecordManager playerRecordManager) {
+		final Bits replacement = new Bits(Math.max(playerRecordManager.count(), MINIMUM_EXPECTED_INSERTIONS), falsePositiveProbability);
+		synchronized (this) {
+			this.pending = replacement;
+		}
+		try {
+			final Collection<String> playerNames = playerRecordManager.listBannedNames();
+			for (String playerName : playerNames) {
+				replacement.put(normalise(playerName));
+			}
+			synchronized (this) {
+				this.filter = replacement;
+			}
+			logger.log(Level.FINE, "Rebuilt filter containing {0} banned players. False positive rate is {1}.", new Object[]{playerNames.size(), this.getFalsePositiveRate()});
+		} finally {
+			synchronized (this) {
+				this.pending = null;
+			}
+		}
+	}
+
+	/**
+	 * A fixed size bit set which uses double hashing to select bits.
+	 */
+	private static final class Bits {
+
+		private final AtomicLongArray words;
+		private final int hashFunctions;
+		private final long size;
+
+		private Bits(int expectedInsertions, double falsePositiveProbability) {
+			final long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+			this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+			this.size = this.words.length() * 64L;
+			this.hashFunctions = Math.max(1, (int) Math.round((double) this.size / expectedInsertions * Math.log(2)));
+		}
+
+		/**
+		 * A 64 bit FNV-1a hash of the characters in the key.
+		 */
+		private static long hash(String key) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < key.length(); i++) {
+				hash ^= key.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			return hash;
+		}
+
+		private double getFalsePositiveRate() {
+			long set = 0;
+			for (int i = 0; i < this.words.length(); i++) {
+				set += Long.bitCount(this.words.get(i));
+			}
+			return Math.pow((double) set / this.size, this.hashFunctions);
+		}
+
+		private long index(long hash, int i) {
+			final int hash1 = (int) hash;
+			final int hash2 = (int) (hash >>> 32);
+			int combined = hash1 + (i * hash2);
+			if (combined < 0) combined = ~combined;
+			return combined % this.size;
+		}
+
+		private boolean mightContain(String key) {
+			final long hash = hash(key);
+			for (int i = 1; i <= this.hashFunctions; i++) {
+				final long index = this.index(hash, i);
+				if ((this.words.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+			}
+			return true;
+		}
+
+		private void put(String key) {
+			final long hash = hash(key);
+			for (int i = 1; i <= this.hashFunctions; i++) {
+				final long index = this.index(hash, i);
+				final int word = (int) (index >>> 6);
+				final long mask = 1L << index;
+				long current;
+				do {
+					current = this.words.get(word);
+					if ((current & mask) != 0) break;
+				} while (!this.words.compareAndSet(word, current, current | mask));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * EbeanBanStore.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.ExpressionList;
+import com.avaje.ebean.QueryResultVisitor;
+
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseWriter;
+import name.richardson.james.bukkit.banhammer.persistence.DirectDatabaseWriter;
+
+/**
+ * Stores players and bans in the database.
+ * <p/>
+ * Ban counts are kept in their own table by {@link BanStatisticsManager} and changed in the same transaction as the
+ * bans they describe.
+ */
+public class EbeanBanStore implements BanStore {
+
+	/** The number of rows loaded from the database at a time when visiting every record. */
+	public static final int VISIT_BATCH_SIZE = 500;
+
+	private final EbeanServer database;
+	private final BanStatisticsManager statistics;
+	private final DatabaseWriter writer;
+
+	public EbeanBanStore(EbeanServer database) {
+		this(database, new DirectDatabaseWriter(database));
+	}
+
+	/**
+	 * @param database the database to store players and bans in
+	 * @param writer the writer which makes every change to the database
+	 */
+	public EbeanBanStore(EbeanServer database, DatabaseWriter writer) {
+		if (database == null || writer == null) throw new IllegalArgumentException();
+		this.database = database;
+		this.writer = writer;
+		this.statistics = new BanStatisticsManager(database, writer);
+	}
+
+	@Override
+	public int changeBanStates(Collection<BanRecord> bans, BanRecord.State state) {
+		final BanStatisticsManager.Changes changes = this.statistics.changes();
+		for (BanRecord ban : bans) {
+			changes.move(ban, state);
+			ban.setState(state);
+		}
+		return this.writer.save(bans, changes);
+	}
+
+	@Override
+	public int countBans() {
+		return this.database.find(BanRecord.class).findRowCount();
+	}
+
+	@Override
+	public int countPlayers() {
+		return this.database.find(PlayerRecord.class).findRowCount();
+	}
+
+	@Override
+	public int deleteBans(Collection<BanRecord> bans) {
+		final BanStatisticsManager.Changes changes = this.statistics.changes();
+		for (BanRecord ban : bans) {
+			changes.remove(ban);
+		}
+		return this.writer.delete(bans, changes);
+	}
+
+	@Override
+	public int deletePlayers(Collection<PlayerRecord> players) {
+		return this.writer.delete(players, null);
+	}
+
+	@Override
+	public List<BanRecord> findActiveBans(Collection<String> normalisedNames) {
+		if (normalisedNames.isEmpty()) return new ArrayList<BanRecord>();
+		final ExpressionList<BanRecord> query = this.database.find(BanRecord.class).fetch("player").fetch("creator").where().in("player.normalisedName", normalisedNames);
+		return whereActive(query, "").findList();
+	}
+
+	@Override
+	public PlayerRecord findPlayer(String normalisedName) {
+		return this.database.find(PlayerRecord.class).where().eq("normalisedName", normalisedName).findUnique();
+	}
+
+	@Override
+	public List<PlayerRecord> findPlayers(Collection<String> normalisedNames) {
+		return this.database.find(PlayerRecord.class).where().in("normalisedName", normalisedNames).findList();
+	}
+
+	@Override
+	public BanStatistics getStatistics(PlayerRecord creator) {
+		return (creator == null) ? this.statistics.getStatistics() : this.statistics.getStatistics(creator);
+	}
+
+	public BanStatisticsManager getStatisticsManager() {
+		return this.statistics;
+	}
+
+	@Override
+	public int insertBans(Collection<BanRecord> bans) {
+		final BanStatisticsManager.Changes changes = this.statistics.changes();
+		for (BanRecord ban : bans) {
+			changes.add(ban);
+		}
+		return this.writer.save(bans, changes);
+	}
+
+	@Override
+	public List<BanRecord> listBans(BanRecord.State state) {
+		return this.database.find(BanRecord.class).where().eq("state", state).findList();
+	}
+
+	@Override
+	public List<BanRecord> listBans(PlayerRecord player, int limit, BanCursor after) {
+		final ExpressionList<BanRecord> query = this.database.find(BanRecord.class).where();
+		if (player != null) query.eq("player.id", player.getId());
+		return seek(query, after).setMaxRows(limit).orderBy("createdAt desc, id desc").findList();
+	}
+
+	@Override
+	public List<String> listBannedPlayerNames() {
+		return getNames(this.database.find(PlayerRecord.class).select("name").where().isNotNull("bans.id").findList());
+	}
+
+	@Override
+	public List<String> listCurrentlyBannedPlayerNames() {
+		return getNames(whereBanned(this.database.find(PlayerRecord.class).select("name").where()).findList());
+	}
+
+	@Override
+	public List<String> listPlayerNames(String prefix, PlayerRecordManager.PlayerStatus status, int limit) {
+		final ExpressionList<PlayerRecord> query = whereStatus(this.database.find(PlayerRecord.class).select("name").where(), prefix, status);
+		return getNames(query.query().setMaxRows(limit).orderBy("normalisedName").findList());
+	}
+
+	@Override
+	public List<PlayerRecord> listPlayers(String prefix, PlayerRecordManager.PlayerStatus status) {
+		return whereStatus(this.database.find(PlayerRecord.class).where(), prefix, status).findList();
+	}
+
+	@Override
+	public int repairStatistics() {
+		return this.statistics.repair();
+	}
+
+	@Override
+	public int savePlayers(Collection<PlayerRecord> players) {
+		return this.writer.save(players, null);
+	}
+
+	/**
+	 * Visit every ban in batches ordered by id, so only one batch is held in memory at a time.
+	 */
+	@Override
+	public void visitBans(QueryResultVisitor<BanRecord> visitor) {
+		int after = 0;
+		List<BanRecord> bans;
+		do {
+			bans = this.database.find(BanRecord.class).where().gt("id", after).orderBy("id").setMaxRows(VISIT_BATCH_SIZE).findList();
+			for (BanRecord ban : bans) {
+				if (!visitor.accept(ban)) return;
+				after = ban.getId();
+			}
+		} while (bans.size() == VISIT_BATCH_SIZE);
+	}
+
+	/**
+	 * Visit every player in batches ordered by id, so only one batch is held in memory at a time.
+	 */
+	@Override
+	public void visitPlayers(QueryResultVisitor<PlayerRecord> visitor) {
+		int after = 0;
+		List<PlayerRecord> players;
+		do {
+			players = this.database.find(PlayerRecord.class).where().gt("id", after).orderBy("id").setMaxRows(VISIT_BATCH_SIZE).findList();
+			for (PlayerRecord player : players) {
+				if (!visitor.accept(player)) return;
+				after = player.getId();
+			}
+		} while (players.size() == VISIT_BATCH_SIZE);
+	}
+
+	private static List<String> getNames(List<PlayerRecord> records) {
+		final List<String> names = new ArrayList<String>(records.size());
+		for (PlayerRecord record : records) {
+			names.add(record.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * Restrict a query to bans older than a cursor, using the (created_at, id) index.
+	 */
+	private static ExpressionList<BanRecord> seek(ExpressionList<BanRecord> query, BanCursor after) {
+		if (after == null) return query;
+		final Timestamp createdAt = after.getCreatedAt();
+		return query.disjunction().lt("createdAt", createdAt).conjunction().eq("createdAt", createdAt).lt("id", after.getId()).endJunction().endJunction();
+	}
+
+	/**
+	 * Restrict a query to active bans.
+	 * <p/>
+	 * Temporary bans are marked as expired shortly after they expire so the expiry time is also checked.
+	 *
+	 * @param path the path from the queried bean to the ban, ending with a dot, or an empty string to query bans
+	 */
+	private static <T> ExpressionList<T> whereActive(ExpressionList<T> query, String path) {
+		final Timestamp now = new Timestamp(System.currentTimeMillis());
+		return query.eq(path + "state", BanRecord.State.NORMAL).disjunction().isNull(path + "expiresAt").gt(path + "expiresAt", now).endJunction();
+	}
+
+	/**
+	 * Restrict a query to players with an active ban.
+	 */
+	private static ExpressionList<PlayerRecord> whereBanned(ExpressionList<PlayerRecord> query) {
+		return whereActive(query, "bans.");
+	}
+
+	private static ExpressionList<PlayerRecord> whereStatus(ExpressionList<PlayerRecord> query, String prefix, PlayerRecordManager.PlayerStatus status) {
+		query.startsWith("normalisedName", prefix);
+		switch (status) {
+			case BANNED:
+				return whereBanned(query);
+			case CREATOR:
+				return query.isNotNull("createdBans.id");
+			default:
+				return query;
+		}
+	}
+
+}
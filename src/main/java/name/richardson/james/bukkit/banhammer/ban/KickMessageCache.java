@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * KickMessageCache.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import name.richardson.james.bukkit.utilities.formatters.time.ApproximateTimeFormatter;
+import name.richardson.james.bukkit.utilities.formatters.time.TimeFormatter;
+
+import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.LISTENER_PLAYER_BANNED_PERMANENTLY;
+import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.LISTENER_PLAYER_BANNED_TEMPORARILY;
+
+/**
+ * A cache of the messages shown to banned players when they are kicked from the server.
+ * <p/>
+ * Messages for permanent bans are rendered once. Messages for temporary bans are rendered once around a
+ * placeholder so only the time remaining needs to be formatted each time the message is used.
+ * <p/>
+ * Messages are cached against the ban instance rather than its id since bans waiting to be saved do not have an
+ * id yet.
+ */
+public class KickMessageCache {
+
+	private static final String TIME_PLACEHOLDER = "\u0000";
+
+	private final ConcurrentMap<BanRecord, Template> messages = new ConcurrentHashMap<BanRecord, Template>();
+	private final TimeFormatter timeFormatter = new ApproximateTimeFormatter();
+
+	public void clear() {
+		this.messages.clear();
+	}
+
+	/**
+	 * Get the message to show a player who has been kicked because of a ban.
+	 *
+	 * @param record the ban
+	 * @return the kick message
+	 */
+	public String getKickMessage(BanRecord record) {
+		Template template = this.messages.get(record);
+		if (template == null) {
+			template = render(record);
+			this.messages.putIfAbsent(record, template);
+		}
+		if (template.suffix == null) return template.prefix;
+		final String time = timeFormatter.getHumanReadableDuration(record.getExpiresAt().getTime());
+		return template.prefix + time + template.suffix;
+	}
+
+	public void invalidate(BanRecord record) {
+		this.messages.remove(record);
+	}
+
+	public int size() {
+		return this.messages.size();
+	}
+
+	private static Template render(BanRecord record) {
+		switch (record.getType()) {
+			case TEMPORARY: {
+				final String message = LISTENER_PLAYER_BANNED_TEMPORARILY.asErrorMessage(record.getReason(), record.getCreator().getName(), TIME_PLACEHOLDER);
+				final int index = message.indexOf(TIME_PLACEHOLDER);
+				if (index == -1) return new Template(message, null);
+				return new Template(message.substring(0, index), message.substring(index + TIME_PLACEHOLDER.length()));
+			}
+			default: {
+				return new Template(LISTENER_PLAYER_BANNED_PERMANENTLY.asErrorMessage(record.getReason(), record.getCreator().getName()), null);
+			}
+		}
+	}
+
+	/**
+	 * A rendered message which may be split around the time remaining.
+	 */
+	private static final class Template {
+
+		private final String prefix;
+		private final String suffix;
+
+		private Template(String prefix, String suffix) {
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+
+	}
+
+}
@@ -0,0 +1,556 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * MemoryBanStore.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban;
+
+import javax.persistence.PersistenceException;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.avaje.ebean.QueryResultVisitor;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Stores players and bans in memory.
+ * <p/>
+ * Each player and ban is held as a single record which every caller shares, so the bans of a player are always up
+ * to date without reloading them. Bans are kept in the order they are listed in, so listing a page of them costs the
+ * same however many bans there are. Statistics are counted from the bans themselves when asked for, so they can
+ * never drift.
+ * <p/>
+ * Nothing is written anywhere until {@link #save(File)} is called. The snapshot it writes can be read back with
+ * {@link #load(File)} when the server starts.
+ */
+public class MemoryBanStore implements BanStore {
+
+	/** Orders bans from newest to oldest, the same as the (created_at, id) index. */
+	private static final Comparator<BanCursor> NEWEST_FIRST = new Comparator<BanCursor>() {
+		@Override
+		public int compare(BanCursor a, BanCursor b) {
+			final int createdAt = b.getCreatedAt().compareTo(a.getCreatedAt());
+			if (createdAt != 0) return createdAt;
+			return (a.getId() < b.getId()) ? 1 : ((a.getId() == b.getId()) ? 0 : -1);
+		}
+	};
+
+	private final NavigableMap<BanCursor, BanRecord> bans = new TreeMap<BanCursor, BanRecord>(NEWEST_FIRST);
+	private final Map<Integer, BanCursor> banPositions = new HashMap<Integer, BanCursor>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Logger logger = PluginLoggerFactory.getLogger(MemoryBanStore.class);
+	private final NavigableMap<String, PlayerRecord> players = new TreeMap<String, PlayerRecord>();
+	private final Map<Integer, PlayerRecord> playersById = new HashMap<Integer, PlayerRecord>();
+
+	private int lastBanId;
+	private int lastPlayerId;
+
+	private static BanRecord getActiveBan(PlayerRecord player, long now) {
+		for (BanRecord ban : player.getBans()) {
+			if (ban.getStoredState() != BanRecord.State.NORMAL) continue;
+			if (ban.getExpiresAt() == null || ban.getExpiresAt().getTime() > now) return ban;
+		}
+		return null;
+	}
+
+	private static boolean isBanned(PlayerRecord player, long now) {
+		return getActiveBan(player, now) != null;
+	}
+
+	private static boolean hasStatus(PlayerRecord player, PlayerRecordManager.PlayerStatus status, long now) {
+		switch (status) {
+			case BANNED:
+				return isBanned(player, now);
+			case CREATOR:
+				return !player.getCreatedBans().isEmpty();
+			default:
+				return true;
+		}
+	}
+
+	@Override
+	public int changeBanStates(Collection<BanRecord> bans, BanRecord.State state) {
+		this.lock.writeLock().lock();
+		try {
+			int changed = 0;
+			for (BanRecord ban : bans) {
+				ban.setState(state);
+				final BanRecord stored = this.getStoredBan(ban);
+				if (stored == null) continue;
+				stored.setState(state);
+				changed++;
+			}
+			return changed;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int countBans() {
+		this.lock.readLock().lock();
+		try {
+			return this.bans.size();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int countPlayers() {
+		this.lock.readLock().lock();
+		try {
+			return this.players.size();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int deleteBans(Collection<BanRecord> bans) {
+		this.lock.writeLock().lock();
+		try {
+			int deleted = 0;
+			for (BanRecord ban : bans) {
+				if (this.removeBan(ban)) deleted++;
+			}
+			return deleted;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int deletePlayers(Collection<PlayerRecord> players) {
+		this.lock.writeLock().lock();
+		try {
+			int deleted = 0;
+			for (PlayerRecord player : players) {
+				final PlayerRecord stored = this.playersById.remove(player.getId());
+				if (stored == null) continue;
+				this.players.remove(stored.getNormalisedName());
+				for (BanRecord ban : stored.getBans()) {
+					this.removeBan(ban);
+				}
+				deleted++;
+			}
+			return deleted;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<BanRecord> findActiveBans(Collection<String> normalisedNames) {
+		final long now = System.currentTimeMillis();
+		this.lock.readLock().lock();
+		try {
+			final List<BanRecord> records = new ArrayList<BanRecord>();
+			for (String normalisedName : new HashSet<String>(normalisedNames)) {
+				final PlayerRecord player = this.players.get(normalisedName);
+				final BanRecord ban = (player == null) ? null : getActiveBan(player, now);
+				if (ban != null) records.add(ban);
+			}
+			return records;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public PlayerRecord findPlayer(String normalisedName) {
+		this.lock.readLock().lock();
+		try {
+			return this.players.get(normalisedName);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<PlayerRecord> findPlayers(Collection<String> normalisedNames) {
+		this.lock.readLock().lock();
+		try {
+			final List<PlayerRecord> records = new ArrayList<PlayerRecord>(normalisedNames.size());
+			for (String normalisedName : new HashSet<String>(normalisedNames)) {
+				final PlayerRecord record = this.players.get(normalisedName);
+				if (record != null) records.add(record);
+			}
+			return records;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public BanStatistics getStatistics(PlayerRecord creator) {
+		final BanStatistics statistics = new BanStatistics();
+		this.lock.readLock().lock();
+		try {
+			final Collection<BanRecord> counted = (creator == null) ? this.bans.values() : this.getStoredPlayer(creator).getCreatedBans();
+			for (BanRecord ban : counted) {
+				statistics.add(ban.getType(), ban.getStoredState(), 1);
+			}
+			return statistics;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int insertBans(Collection<BanRecord> bans) {
+		this.lock.writeLock().lock();
+		try {
+			final Map<String, PlayerRecord> newPlayers = new HashMap<String, PlayerRecord>();
+			for (BanRecord ban : bans) {
+				this.checkUnique(ban.getPlayer(), newPlayers);
+				this.checkUnique(ban.getCreator(), newPlayers);
+			}
+			int inserted = 0;
+			for (BanRecord ban : bans) {
+				if (this.getStoredBan(ban) != null) continue;
+				ban.setPlayer(this.storePlayer(ban.getPlayer()));
+				ban.setCreator(this.storePlayer(ban.getCreator()));
+				if (ban.getId() == 0) ban.setId(++this.lastBanId);
+				this.lastBanId = Math.max(this.lastBanId, ban.getId());
+				final BanCursor position = BanCursor.after(ban);
+				this.bans.put(position, ban);
+				this.banPositions.put(ban.getId(), position);
+				ban.getPlayer().getBans().add(ban);
+				ban.getCreator().getCreatedBans().add(ban);
+				inserted++;
+			}
+			return inserted;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<BanRecord> listBans(BanRecord.State state) {
+		this.lock.readLock().lock();
+		try {
+			final List<BanRecord> records = new ArrayList<BanRecord>();
+			for (BanRecord ban : this.bans.values()) {
+				if (ban.getStoredState() == state) records.add(ban);
+			}
+			return records;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<BanRecord> listBans(PlayerRecord player, int limit, BanCursor after) {
+		this.lock.readLock().lock();
+		try {
+			final Collection<BanRecord> listed;
+			if (player == null) {
+				listed = (after == null) ? this.bans.values() : this.bans.tailMap(after, false).values();
+			} else {
+				final NavigableMap<BanCursor, BanRecord> playerBans = new TreeMap<BanCursor, BanRecord>(NEWEST_FIRST);
+				for (BanRecord ban : this.getStoredPlayer(player).getBans()) {
+					final BanCursor position = BanCursor.after(ban);
+					if (after == null || NEWEST_FIRST.compare(position, after) > 0) playerBans.put(position, ban);
+				}
+				listed = playerBans.values();
+			}
+			final List<BanRecord> records = new ArrayList<BanRecord>(Math.min(limit, listed.size()));
+			for (BanRecord ban : listed) {
+				if (records.size() == limit) break;
+				records.add(ban);
+			}
+			return records;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<String> listBannedPlayerNames() {
+		this.lock.readLock().lock();
+		try {
+			final List<String> names = new ArrayList<String>();
+			for (PlayerRecord player : this.players.values()) {
+				if (!player.getBans().isEmpty()) names.add(player.getName());
+			}
+			return names;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<String> listCurrentlyBannedPlayerNames() {
+		final long now = System.currentTimeMillis();
+		this.lock.readLock().lock();
+		try {
+			final List<String> names = new ArrayList<String>();
+			for (PlayerRecord player : this.players.values()) {
+				if (isBanned(player, now)) names.add(player.getName());
+			}
+			return names;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<String> listPlayerNames(String prefix, PlayerRecordManager.PlayerStatus status, int limit) {
+		final List<String> names = new ArrayList<String>();
+		for (PlayerRecord player : this.listPlayers(prefix, status, limit)) {
+			names.add(player.getName());
+		}
+		return names;
+	}
+
+	@Override
+	public List<PlayerRecord> listPlayers(String prefix, PlayerRecordManager.PlayerStatus status) {
+		return this.listPlayers(prefix, status, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Replace every player and ban with those in a snapshot.
+	 *
+	 * @param file the snapshot to load, which is ignored if it does not exist
+	 */
+	public void load(File file) {
+		if (!file.exists()) return;
+		final YamlConfiguration snapshot = YamlConfiguration.loadConfiguration(file);
+		this.lock.writeLock().lock();
+		try {
+			this.bans.clear();
+			this.banPositions.clear();
+			this.players.clear();
+			this.playersById.clear();
+			this.lastBanId = 0;
+			this.lastPlayerId = 0;
+			final ConfigurationSection players = snapshot.getConfigurationSection("players");
+			if (players != null) {
+				for (String id : players.getKeys(false)) {
+					final PlayerRecord player = new PlayerRecord();
+					player.setId(Integer.parseInt(id));
+					player.setName(players.getString(id + ".name"));
+					if (player.getName() != null) this.storePlayer(player);
+				}
+			}
+			final ConfigurationSection bans = snapshot.getConfigurationSection("bans");
+			if (bans != null) {
+				final List<BanRecord> records = new ArrayList<BanRecord>();
+				for (String id : bans.getKeys(false)) {
+					final BanRecord ban = new BanRecord();
+					ban.setId(Integer.parseInt(id));
+					ban.setPlayer(this.playersById.get(bans.getInt(id + ".player")));
+					ban.setCreator(this.playersById.get(bans.getInt(id + ".creator")));
+					if (ban.getPlayer() == null || ban.getCreator() == null) {
+						logger.log(Level.WARNING, "Ignoring ban {0} in {1} as its players are missing.", new Object[]{id, file.getName()});
+						continue;
+					}
+					ban.setReason(bans.getString(id + ".reason"));
+					ban.setCreatedAt(new Timestamp(bans.getLong(id + ".created-at")));
+					if (bans.contains(id + ".expires-at")) ban.setExpiresAt(new Timestamp(bans.getLong(id + ".expires-at")));
+					ban.setState(BanRecord.State.valueOf(bans.getString(id + ".state")));
+					records.add(ban);
+				}
+				this.insertBans(records);
+			}
+			logger.log(Level.FINE, "Loaded {0} players and {1} bans from {2}.", new Object[]{this.players.size(), this.bans.size(), file.getName()});
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int repairStatistics() {
+		return 0;
+	}
+
+	/**
+	 * Write a snapshot of every player and ban.
+	 * <p/>
+	 * The snapshot is written to a temporary file first so an interrupted save leaves the previous snapshot intact.
+	 *
+	 * @param file the file to write the snapshot to
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void save(File file)
+	throws IOException {
+		final YamlConfiguration snapshot = new YamlConfiguration();
+		this.lock.readLock().lock();
+		try {
+			for (PlayerRecord player : this.players.values()) {
+				snapshot.set("players." + player.getId() + ".name", player.getName());
+			}
+			for (BanRecord ban : this.bans.values()) {
+				final String path = "bans." + ban.getId();
+				snapshot.set(path + ".player", ban.getPlayer().getId());
+				snapshot.set(path + ".creator", ban.getCreator().getId());
+				snapshot.set(path + ".reason", ban.getReason());
+				snapshot.set(path + ".created-at", ban.getCreatedAt().getTime());
+				if (ban.getExpiresAt() != null) snapshot.set(path + ".expires-at", ban.getExpiresAt().getTime());
+				snapshot.set(path + ".state", ban.getStoredState().name());
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		final File temporary = new File(file.getPath() + ".tmp");
+		snapshot.save(temporary);
+		if (file.exists() && !file.delete()) throw new IOException("Unable to replace " + file.getPath());
+		if (!temporary.renameTo(file)) throw new IOException("Unable to rename " + temporary.getPath());
+	}
+
+	@Override
+	public int savePlayers(Collection<PlayerRecord> players) {
+		this.lock.writeLock().lock();
+		try {
+			final Map<String, PlayerRecord> newPlayers = new HashMap<String, PlayerRecord>();
+			for (PlayerRecord player : players) {
+				this.checkUnique(player, newPlayers);
+			}
+			for (PlayerRecord player : players) {
+				this.storePlayer(player);
+			}
+			return players.size();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Visit a copy of every ban, so the visitor may change the store as it goes.
+	 */
+	@Override
+	public void visitBans(QueryResultVisitor<BanRecord> visitor) {
+		final List<BanRecord> bans;
+		this.lock.readLock().lock();
+		try {
+			bans = new ArrayList<BanRecord>(this.bans.values());
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		for (BanRecord ban : bans) {
+			if (!visitor.accept(ban)) return;
+		}
+	}
+
+	/**
+	 * Visit a copy of every player, so the visitor may change the store as it goes.
+	 */
+	@Override
+	public void visitPlayers(QueryResultVisitor<PlayerRecord> visitor) {
+		final List<PlayerRecord> players;
+		this.lock.readLock().lock();
+		try {
+			players = new ArrayList<PlayerRecord>(this.players.values());
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		for (PlayerRecord player : players) {
+			if (!visitor.accept(player)) return;
+		}
+	}
+
+	/**
+	 * Check a player can be stored before anything is changed, so a failed save changes nothing as a transaction
+	 * would.
+	 *
+	 * @param player the player to check
+	 * @param newPlayers the players which are about to be stored, keyed by normalised name
+	 */
+	private void checkUnique(PlayerRecord player, Map<String, PlayerRecord> newPlayers) {
+		if (this.playersById.containsKey(player.getId())) return;
+		final PlayerRecord other = newPlayers.put(player.getNormalisedName(), player);
+		if (this.players.containsKey(player.getNormalisedName()) || (other != null && other != player)) {
+			throw new PersistenceException("A player named " + player.getName() + " already exists.");
+		}
+	}
+
+	private BanRecord getStoredBan(BanRecord ban) {
+		final BanCursor position = this.banPositions.get(ban.getId());
+		return (position == null) ? null : this.bans.get(position);
+	}
+
+	/**
+	 * Get the stored record of a player, which may be a different instance to the one given.
+	 */
+	private PlayerRecord getStoredPlayer(PlayerRecord player) {
+		final PlayerRecord stored = this.playersById.get(player.getId());
+		return (stored == null) ? player : stored;
+	}
+
+	private List<PlayerRecord> listPlayers(String prefix, PlayerRecordManager.PlayerStatus status, int limit) {
+		final long now = System.currentTimeMillis();
+		this.lock.readLock().lock();
+		try {
+			final List<PlayerRecord> records = new ArrayList<PlayerRecord>();
+			for (PlayerRecord player : this.players.tailMap(prefix, true).values()) {
+				if (records.size() == limit || !player.getNormalisedName().startsWith(prefix)) break;
+				if (hasStatus(player, status, now)) records.add(player);
+			}
+			return records;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private boolean removeBan(BanRecord ban) {
+		final BanCursor position = this.banPositions.remove(ban.getId());
+		if (position == null) return false;
+		final BanRecord stored = this.bans.remove(position);
+		stored.getPlayer().getBans().remove(stored);
+		stored.getCreator().getCreatedBans().remove(stored);
+		return true;
+	}
+
+	/**
+	 * Store a player if they are not stored already, returning the stored record.
+	 * <p/>
+	 * Stored players keep their bans in lists which are safe to read while they are being changed.
+	 */
+	private PlayerRecord storePlayer(PlayerRecord player) {
+		final PlayerRecord stored = this.playersById.get(player.getId());
+		if (stored != null) return stored;
+		if (this.players.containsKey(player.getNormalisedName())) {
+			throw new PersistenceException("A player named " + player.getName() + " already exists.");
+		}
+		if (player.getId() == 0) player.setId(++this.lastPlayerId);
+		this.lastPlayerId = Math.max(this.lastPlayerId, player.getId());
+		if (!(player.getBans() instanceof CopyOnWriteArrayList)) player.setBans(new CopyOnWriteArrayList<BanRecord>(player.getBans()));
+		if (!(player.getCreatedBans() instanceof CopyOnWriteArrayList)) player.setCreatedBans(new CopyOnWriteArrayList<BanRecord>(player.getCreatedBans()));
+		this.players.put(player.getNormalisedName(), player);
+		this.playersById.put(player.getId(), player);
+		return player;
+	}
+
+}
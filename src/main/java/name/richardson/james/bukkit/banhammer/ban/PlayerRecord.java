@@ -20,6 +20,7 @@ package name.richardson.james.bukkit.banhammer.ban;
 import javax.persistence.*;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 
 import com.avaje.ebean.validation.NotNull;
 
@@ -39,6 +40,13 @@ public class PlayerRecord {
 	/** The name. */
 	@NotNull
 	private String name;
+	/** The name in lowercase, used to look up players. */
+	@Column(unique = true)
+	private String normalisedName;
+
+	public static String normalise(String playerName) {
+		return playerName.toLowerCase(Locale.ENGLISH);
+	}
 
 	public BanRecord getActiveBan() {
 		for (final BanRecord ban : this.getBans()) {
@@ -81,6 +89,15 @@ public class PlayerRecord {
 
 	public void setName(final String name) {
 		this.name = name;
+		this.normalisedName = (name == null) ? null : normalise(name);
+	}
+
+	public String getNormalisedName() {
+		return this.normalisedName;
+	}
+
+	public void setNormalisedName(final String normalisedName) {
+		this.normalisedName = normalisedName;
 	}
 
 	public boolean isBanned() {
@@ -3,15 +3,29 @@ package name.richardson.james.bukkit.banhammer.ban;
 import javax.persistence.PersistenceException;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.QueryResultVisitor;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
 
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseWriter;
+import name.richardson.james.bukkit.banhammer.persistence.DirectDatabaseWriter;
+
 public class PlayerRecordManager {
 
 	public enum PlayerStatus {
@@ -19,26 +33,132 @@ public class PlayerRecordManager {
 		BANNED,
 		CREATOR
 	}
-	private final EbeanServer database;
+
+	/** The maximum number of ban creators whose ids are cached. */
+	public static final int MAXIMUM_CACHED_CREATORS = 256;
+
+	private final Map<String, Creator> creators = Collections.synchronizedMap(new LinkedHashMap<String, Creator>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Creator> eldest) {
+			return this.size() > MAXIMUM_CACHED_CREATORS;
+		}
+	});
+	private final ListeningExecutorService executor;
 	private final Logger logger = PluginLoggerFactory.getLogger(PlayerRecordManager.class);
+	private final BanStore store;
 
 	public PlayerRecordManager(EbeanServer database) {
-		if (database == null) throw new IllegalArgumentException();
-		this.database = database;
+		this(database, MoreExecutors.sameThreadExecutor());
+	}
+
+	/**
+	 * @param database the database to store players in
+	 * @param executor the executor which runs the asynchronous variants of each method
+	 */
+	public PlayerRecordManager(EbeanServer database, ListeningExecutorService executor) {
+		this(database, executor, new DirectDatabaseWriter(database));
+	}
+
+	/**
+	 * @param database the database to store players in
+	 * @param executor the executor which runs the asynchronous variants of each method
+	 * @param writer the writer which makes every change to the database
+	 */
+	public PlayerRecordManager(EbeanServer database, ListeningExecutorService executor, DatabaseWriter writer) {
+		this(new EbeanBanStore(database, writer), executor);
+	}
+
+	/**
+	 * @param store the store to keep players in
+	 * @param executor the executor which runs the asynchronous variants of each method
+	 */
+	public PlayerRecordManager(BanStore store, ListeningExecutorService executor) {
+		if (store == null || executor == null) throw new IllegalArgumentException();
+		this.store = store;
+		this.executor = executor;
 	}
 
 	public int count() {
-		return this.database.find(PlayerRecord.class).findRowCount();
+		return this.store.countPlayers();
 	}
 
+	/**
+	 * Get the record for a player, creating it if it does not exist.
+	 * <p/>
+	 * Stores keep normalised names unique, which makes this safe to call concurrently. If another thread creates the
+	 * record first the insert fails and the record it created is returned instead.
+	 *
+	 * @param playerName the name of the player
+	 * @return the record for the player
+	 */
 	public PlayerRecord create(String playerName) {
 		PlayerRecord record = this.find(playerName);
 		if (record != null) return record;
 		logger.log(Level.FINER, "Creating PlayerRecord for " + playerName);
 		record = new PlayerRecord();
 		record.setName(playerName);
-		this.save(record);
-		return this.find(playerName);
+		try {
+			this.store.savePlayers(Arrays.asList(record));
+			return record;
+		} catch (PersistenceException e) {
+			logger.log(Level.FINER, "PlayerRecord for {0} was created concurrently.", playerName);
+			return this.find(playerName);
+		}
+	}
+
+	/**
+	 * Get the records for several players, creating any which do not exist.
+	 * <p/>
+	 * Existing records are found together and missing records are inserted together. If
+	 * another thread creates one of the missing players first, the players are created one at a time instead.
+	 *
+	 * @param playerNames the names of the players
+	 * @return the records for the players, keyed by normalised name
+	 */
+	public Map<String, PlayerRecord> create(Collection<String> playerNames) {
+		final Map<String, PlayerRecord> records = this.find(playerNames);
+		final Map<String, PlayerRecord> missing = new LinkedHashMap<String, PlayerRecord>();
+		for (String playerName : playerNames) {
+			final String key = PlayerRecord.normalise(playerName);
+			if (records.containsKey(key) || missing.containsKey(key)) continue;
+			final PlayerRecord record = new PlayerRecord();
+			record.setName(playerName);
+			missing.put(key, record);
+		}
+		if (missing.isEmpty()) return records;
+		logger.log(Level.FINER, "Creating PlayerRecords for " + missing.keySet());
+		try {
+			this.store.savePlayers(missing.values());
+			records.putAll(missing);
+		} catch (PersistenceException e) {
+			logger.log(Level.FINER, "PlayerRecords for {0} were created concurrently.", missing.keySet());
+			for (Map.Entry<String, PlayerRecord> entry : missing.entrySet()) {
+				records.put(entry.getKey(), this.create(entry.getValue().getName()));
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Get the record for a player who is creating a ban.
+	 * <p/>
+	 * The same few players create most bans so their ids and names are cached, with the least recently used
+	 * creator dropped once the cache is full. Each call returns a new record holding only the id and name, so
+	 * records are never shared between threads. Bans only store the id of their creator, so the record does not
+	 * need to be loaded from the database.
+	 *
+	 * @param playerName the name of the player
+	 * @return the record for the player
+	 */
+	public PlayerRecord createCreator(String playerName) {
+		final String key = PlayerRecord.normalise(playerName);
+		Creator creator = this.creators.get(key);
+		if (creator == null) {
+			final PlayerRecord record = this.create(playerName);
+			creator = new Creator(record.getId(), record.getName());
+			this.creators.put(key, creator);
+		}
+		return creator.toRecord();
 	}
 
 	public void delete(PlayerRecord record) {
@@ -47,7 +167,10 @@ public class PlayerRecordManager {
 
 	public void delete(List<PlayerRecord> records) {
 		logger.log(Level.FINER, "Deleting PlayerRecords: " + records);
-		this.database.delete(records);
+		for (PlayerRecord record : records) {
+			this.creators.remove(record.getNormalisedName());
+		}
+		this.store.deletePlayers(records);
 	}
 
 	public boolean exists(String playerName) {
@@ -55,14 +178,46 @@ public class PlayerRecordManager {
 		return find(playerName) != null;
 	}
 
+	/**
+	 * Find the records for several players at once.
+	 *
+	 * @param playerNames the names of the players
+	 * @return the records which exist, keyed by normalised name
+	 */
+	public Map<String, PlayerRecord> find(Collection<String> playerNames) {
+		final Map<String, PlayerRecord> records = new HashMap<String, PlayerRecord>();
+		if (playerNames.isEmpty()) return records;
+		final Set<String> normalisedNames = new HashSet<String>(playerNames.size());
+		for (String playerName : playerNames) {
+			normalisedNames.add(PlayerRecord.normalise(playerName));
+		}
+		for (PlayerRecord record : this.store.findPlayers(normalisedNames)) {
+			records.put(record.getNormalisedName(), record);
+		}
+		return records;
+	}
+
+	public ListenableFuture<Map<String, PlayerRecord>> findAsync(final Collection<String> playerNames) {
+		return this.executor.submit(new Callable<Map<String, PlayerRecord>>() {
+			@Override
+			public Map<String, PlayerRecord> call() {
+				return find(playerNames);
+			}
+		});
+	}
+
 	public PlayerRecord find(String playerName) {
 		logger.log(Level.FINER, "Finding PlayerRecord for " + playerName);
-		try {
-			return database.find(PlayerRecord.class).where().ieq("name", playerName).findUnique();
-		} catch (PersistenceException e) {
-			this.removeDuplicates(playerName);
-			return database.find(PlayerRecord.class).where().ieq("name", playerName).findUnique();
-		}
+		return this.store.findPlayer(PlayerRecord.normalise(playerName));
+	}
+
+	public ListenableFuture<PlayerRecord> findAsync(final String playerName) {
+		return this.executor.submit(new Callable<PlayerRecord>() {
+			@Override
+			public PlayerRecord call() {
+				return find(playerName);
+			}
+		});
 	}
 
 	public BannedPlayerBuilder getBannedPlayerBuilder() {
@@ -70,34 +225,49 @@ public class PlayerRecordManager {
 	}
 
 	public List<PlayerRecord> list(String playerName, PlayerStatus status) {
-		switch (status) {
-			case BANNED: {
-				List<PlayerRecord> records = database.find(PlayerRecord.class).where().istartsWith("name", playerName).findList();
-				ListIterator<PlayerRecord> i = records.listIterator();
-				while (i.hasNext()) {
-					PlayerRecord record = i.next();
-					if (record.isBanned()) continue;
-					i.remove();
-				}
-				return records;
-			} case CREATOR: {
-				List<PlayerRecord> records = database.find(PlayerRecord.class).where().istartsWith("name", playerName).findList();
-				ListIterator<PlayerRecord> i = records.listIterator();
-				while (i.hasNext()) {
-					PlayerRecord record = i.next();
-					if (record.getCreatedBans().size() > 0) continue;
-					i.remove();
-				}
-				return records;
-			} default: {
-				return database.find(PlayerRecord.class).where().istartsWith("name", playerName).findList();
-			}
-		}
+		return this.store.listPlayers(PlayerRecord.normalise(playerName), status);
 	}
 
-	public List<PlayerRecord> list() {
-		logger.log(Level.FINER, "Returning list containing all PlayerRecords.");
-		return database.find(PlayerRecord.class).findList();
+	/**
+	 * List the names of players whose name starts with a prefix.
+	 *
+	 * @param playerName the prefix to match
+	 * @param status the status the players must have
+	 * @param limit the maximum number of names to return
+	 * @return the names of the players in alphabetical order
+	 */
+	public List<String> listNames(String playerName, PlayerStatus status, int limit) {
+		return this.store.listPlayerNames(PlayerRecord.normalise(playerName), status, limit);
+	}
+
+	/**
+	 * List the names of every player who has been banned at least once.
+	 *
+	 * @return the names of the players
+	 */
+	public List<String> listBannedNames() {
+		logger.log(Level.FINER, "Returning list containing the names of all banned players.");
+		return this.store.listBannedPlayerNames();
+	}
+
+	/**
+	 * List the names of every player who is currently banned.
+	 *
+	 * @return the names of the players
+	 */
+	public List<String> listCurrentlyBannedNames() {
+		logger.log(Level.FINER, "Returning list containing the names of all currently banned players.");
+		return this.store.listCurrentlyBannedPlayerNames();
+	}
+
+	/**
+	 * Visit every player without loading them all into memory.
+	 *
+	 * @param visitor the visitor to pass each player to, which returns false to stop visiting
+	 */
+	public void visit(QueryResultVisitor<PlayerRecord> visitor) {
+		logger.log(Level.FINER, "Visiting all PlayerRecords.");
+		this.store.visitPlayers(visitor);
 	}
 
 	public void save(PlayerRecord record) {
@@ -106,30 +276,28 @@ public class PlayerRecordManager {
 
 	public void save(List<PlayerRecord> records) {
 		logger.log(Level.FINER, "Saving PlayerRecords: " + records);
-		this.database.save(records);
+		this.store.savePlayers(records);
 	}
 
-	protected EbeanServer getDatabase() {
-		return database;
+	public ListenableFuture<?> saveAsync(final PlayerRecord record) {
+		return this.saveAsync(Arrays.asList(record));
 	}
 
-		/**
-	 * Delete duplicate player records.
-	 * <p/>
-	 * This happened due to a bug introduced around version 2.0. I thought it was
-	 * not a major problem but it appears to be causing issues for many players.
-	 * This will automatically fix any issues as they are found.
-	 *
-	 * @param playerName the player name
-	 */
-	private void removeDuplicates(String playerName) {
-		logger.log(Level.WARNING, "duplicate-record-found");
-		final List<PlayerRecord> records = database.find(PlayerRecord.class).where().ieq("name", playerName).findList();
-		for (final PlayerRecord record : records) {
-			if ((record.getCreatedBans().size() == 0) && (record.getBans().size() == 0)) {
-				this.delete(record);
+	public ListenableFuture<?> saveAsync(final List<PlayerRecord> records) {
+		return this.executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				save(records);
 			}
-		}
+		});
+	}
+
+	protected ListeningExecutorService getExecutor() {
+		return executor;
+	}
+
+	protected BanStore getStore() {
+		return store;
 	}
 
 	public class BannedPlayerBuilder {
@@ -147,12 +315,17 @@ public class PlayerRecordManager {
 		}
 
 		public boolean save() {
-			BanRecordManager manager = new BanRecordManager(PlayerRecordManager.this.getDatabase());
+			BanRecordManager manager = new BanRecordManager(PlayerRecordManager.this.getStore(), PlayerRecordManager.this.getExecutor());
 			return manager.save(record);
 		}
 
 		public BannedPlayerBuilder setCreator(String playerName) {
-			this.record.setCreator(create(playerName));
+			this.record.setCreator(createCreator(playerName));
+			return this;
+		}
+
+		public BannedPlayerBuilder setCreator(PlayerRecord creator) {
+			this.record.setCreator(creator);
 			return this;
 		}
 
@@ -175,10 +348,35 @@ public class PlayerRecordManager {
 			return this;
 		}
 
+		public BannedPlayerBuilder setPlayer(PlayerRecord player) {
+			this.record.setPlayer(player);
+			return this;
+		}
+
 		public BannedPlayerBuilder setReason(String reason) {
 			this.record.setReason(reason);
 			return this;
 		}
 
 	}
+
+	private static final class Creator {
+
+		private final int id;
+		private final String name;
+
+		private Creator(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		private PlayerRecord toRecord() {
+			final PlayerRecord record = new PlayerRecord();
+			record.setId(this.id);
+			record.setName(this.name);
+			return record;
+		}
+
+	}
+
 }
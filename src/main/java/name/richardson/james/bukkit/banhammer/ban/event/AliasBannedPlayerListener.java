@@ -1,6 +1,12 @@
 package name.richardson.james.bukkit.banhammer.ban.event;
 
+import java.util.Locale;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,43 +21,103 @@ import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
 
 import name.richardson.james.bukkit.alias.persistence.PlayerNameRecord;
 import name.richardson.james.bukkit.alias.persistence.PlayerNameRecordManager;
-import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.AliasClusterIndex;
+import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanWriteBehindQueue;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.SingleFlight;
 
 import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.ALIAS_BAN_REASON;
+import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.LISTENER_UNABLE_TO_CHECK_PLAYER;
 
 public final class AliasBannedPlayerListener extends AbstractListener {
 
 	private static final String BAN_CREATOR_NAME = "AliasPlugin";
+	private final ActiveBanIndex activeBanIndex;
+	private final AliasClusterIndex aliasClusterIndex;
+	private final BanWriteBehindQueue banWriteBehindQueue;
+	private final SingleFlight<String, BanRecord> aliasChecks = new SingleFlight<String, BanRecord>();
 	private final Logger logger = PluginLoggerFactory.getLogger(AliasBannedPlayerListener.class);
+	private final LoginCheckGuard loginCheckGuard;
 	private final PlayerNameRecordManager playerNameRecordManager;
 	private final PlayerRecordManager playerRecordManager;
 
-	public AliasBannedPlayerListener(Plugin plugin, PluginManager pluginManager, PlayerRecordManager playerRecordManager, PlayerNameRecordManager playerNameRecordManager) {
+	public AliasBannedPlayerListener(Plugin plugin, PluginManager pluginManager, PlayerRecordManager playerRecordManager, PlayerNameRecordManager playerNameRecordManager, ActiveBanIndex activeBanIndex, AliasClusterIndex aliasClusterIndex, BanWriteBehindQueue banWriteBehindQueue, LoginCheckGuard loginCheckGuard) {
 		super(plugin, pluginManager);
+		this.activeBanIndex = activeBanIndex;
+		this.aliasClusterIndex = aliasClusterIndex;
+		this.banWriteBehindQueue = banWriteBehindQueue;
+		this.loginCheckGuard = loginCheckGuard;
 		this.playerRecordManager = playerRecordManager;
 		this.playerNameRecordManager = playerNameRecordManager;
 	}
 
-	public void createBanIfPlayerHasBannedAlias(String playerName) {
-		PlayerNameRecord playerNameRecord = playerNameRecordManager.find(playerName);
-		if (playerNameRecord == null) return;
-		Set<String> aliases = playerNameRecord.getAliases();
-		for (String alias : aliases) {
-			if (!this.playerRecordManager.exists(alias)) continue;
-			PlayerRecord record = this.playerRecordManager.find(alias);
-			if (record.isBanned()) {
-				logger.log(Level.FINER, "Found an alias for {0}.", alias);
-				PlayerRecord playerRecord = this.playerRecordManager.find(alias);
-				String reason = ALIAS_BAN_REASON.asMessage(alias);
-				PlayerRecordManager.BannedPlayerBuilder builder = playerRecordManager.getBannedPlayerBuilder();
-				builder.setPlayer(playerName);
-				builder.setCreator(BAN_CREATOR_NAME);
-				builder.setReason(reason);
-				builder.setExpiresAt(playerRecord.getActiveBan().getExpiresAt());
-				builder.save();
+	/**
+	 * Ban a player if any of their aliases are banned.
+	 * <p/>
+	 * Concurrent checks for the same player are coalesced so only one of them queries the database and creates a
+	 * ban; the others wait for it to finish.
+	 *
+	 * @param playerName the name of the player to check
+	 * @return the ban that was created or null if none of the aliases are banned
+	 */
+	public BanRecord createBanIfPlayerHasBannedAlias(final String playerName) {
+		return aliasChecks.execute(playerName.toLowerCase(Locale.ENGLISH), new Callable<BanRecord>() {
+			@Override
+			public BanRecord call() {
+				return createBanFromBannedAlias(playerName);
 			}
+		});
+	}
+
+	/**
+	 * Rebuild the alias clusters using every player known to the Alias plugin.
+	 * <p/>
+	 * The Alias plugin only offers its records as a single list so they can not be streamed from here. Players
+	 * who are not in a cluster are looked up and added as they are checked, but aliases found for players who are
+	 * already in one are only picked up here, along with associations which have been removed.
+	 */
+	public void rebuildAliasClusters() {
+		final Map<String, Set<String>> associations = new HashMap<String, Set<String>>();
+		for (PlayerNameRecord record : playerNameRecordManager.list()) {
+			associations.put(record.getPlayerName(), record.getAliases());
+		}
+		aliasClusterIndex.rebuild(associations);
+	}
+
+	private BanRecord createBanFromBannedAlias(String playerName) {
+		if (!this.aliasClusterIndex.contains(playerName)) {
+			// only players the Alias plugin did not know about when the clusters were built need to be looked up
+			PlayerNameRecord playerNameRecord = playerNameRecordManager.find(playerName);
+			if (playerNameRecord == null) return null;
+			this.aliasClusterIndex.associate(playerName, playerNameRecord.getAliases());
+		}
+		List<String> bannedAliases = this.aliasClusterIndex.getBannedAliases(playerName);
+		// every active ban is indexed so the aliases can be checked without querying the database
+		List<BanRecord> aliasBans = this.activeBanIndex.getActiveBans(bannedAliases);
+		if (aliasBans.isEmpty()) return null;
+		BanRecord aliasBan = aliasBans.get(0);
+		String alias = aliasBan.getPlayer().getName();
+		logger.log(Level.FINER, "Found an alias for {0}.", alias);
+		String reason = ALIAS_BAN_REASON.asMessage(alias);
+		BanRecord ban = BanWriteBehindQueue.createBan(playerName, BAN_CREATOR_NAME);
+		ban.setReason(reason);
+		ban.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+		ban.setExpiresAt(aliasBan.getExpiresAt());
+		if (!banWriteBehindQueue.offer(ban)) {
+			// the queue is full so save the ban now instead
+			PlayerRecordManager.BannedPlayerBuilder builder = playerRecordManager.getBannedPlayerBuilder();
+			builder.setPlayer(playerName);
+			builder.setCreator(BAN_CREATOR_NAME);
+			builder.setReason(reason);
+			builder.setExpiresAt(aliasBan.getExpiresAt());
+			if (!builder.save()) return null;
+			ban = builder.getRecord();
 		}
+		// the ban is indexed straight away so the login is denied without waiting for it to be saved
+		activeBanIndex.put(ban);
+		return ban;
 	}
 
 	@EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
@@ -59,7 +125,18 @@ public final class AliasBannedPlayerListener extends AbstractListener {
 		if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.KICK_BANNED) return;
 		logger.log(Level.FINER, "Received " + event.getEventName());
 		final String playerName = event.getName();
-		createBanIfPlayerHasBannedAlias(playerName);
+		if (activeBanIndex.contains(playerName)) return;
+		final boolean checked = loginCheckGuard.check(new Callable<BanRecord>() {
+			@Override
+			public BanRecord call() {
+				return createBanIfPlayerHasBannedAlias(playerName);
+			}
+		});
+		if (checked) return;
+		logger.log(Level.FINE, "Unable to check aliases of {0} in time.", playerName);
+		if (loginCheckGuard.getFallbackPolicy() == LoginCheckGuard.FallbackPolicy.FAIL_CLOSED) {
+			event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, LISTENER_UNABLE_TO_CHECK_PLAYER.asMessage());
+		}
 	}
 
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -70,6 +147,7 @@ public final class AliasBannedPlayerListener extends AbstractListener {
 		if (playerNameRecord != null && aliasPlayerNameRecord != null) {
 			playerNameRecord.removeAssociation(aliasPlayerNameRecord);
 			playerNameRecordManager.save(playerNameRecord);
+			aliasClusterIndex.remove(event.getPlayerName());
 		}
 	}
 
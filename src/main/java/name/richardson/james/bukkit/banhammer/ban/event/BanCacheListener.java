@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanCacheListener.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban.event;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+import name.richardson.james.bukkit.utilities.listener.AbstractListener;
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+
+/**
+ * Keeps the in-memory ban caches in step with bans made and pardoned through BanHammer.
+ */
+public final class BanCacheListener extends AbstractListener {
+
+	private final ActiveBanIndex activeBanIndex;
+	private final Logger logger = PluginLoggerFactory.getLogger(BanCacheListener.class);
+
+	public BanCacheListener(Plugin plugin, PluginManager pluginManager, ActiveBanIndex activeBanIndex) {
+		super(plugin, pluginManager);
+		this.activeBanIndex = activeBanIndex;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerBanned(final BanHammerPlayerBannedEvent event) {
+		logger.log(Level.FINER, "Received " + event.getEventName());
+		activeBanIndex.put(event.getRecord());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerPardoned(final BanHammerPlayerPardonedEvent event) {
+		logger.log(Level.FINER, "Received " + event.getEventName());
+		activeBanIndex.remove(event.getRecord());
+	}
+
+}
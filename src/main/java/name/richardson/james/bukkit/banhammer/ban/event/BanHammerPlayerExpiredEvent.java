@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanHammerPlayerExpiredEvent.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban.event;
+
+import org.bukkit.event.HandlerList;
+
+import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+
+/**
+ * This event is fired every time a temporary ban is marked as expired.
+ */
+public class BanHammerPlayerExpiredEvent extends BanHammerPlayerEvent {
+
+	private static final HandlerList handlers = new HandlerList();
+
+	public static HandlerList getHandlerList() {
+		return BanHammerPlayerExpiredEvent.handlers;
+	}
+
+	public BanHammerPlayerExpiredEvent(final BanRecord record, final boolean silent) {
+		super(record, silent);
+	}
+
+	@Override
+	public HandlerList getHandlers() {
+		return BanHammerPlayerExpiredEvent.handlers;
+	}
+
+}
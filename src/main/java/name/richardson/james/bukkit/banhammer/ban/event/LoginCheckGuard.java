@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * LoginCheckGuard.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban.event;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.CircuitBreaker;
+
+/**
+ * Limits how long login checks which query the database may take.
+ * <p/>
+ * Only a few checks are run at the same time. During a burst of logins a check waits up to the latency budget for
+ * another to finish, and is skipped if none does. Once running, checks are abandoned if they take longer than the
+ * latency budget. Checks which are abandoned, or fail, count towards opening a circuit breaker, but checks which are
+ * skipped do not as a busy server is not a fault of the database. While the breaker is open checks are not run at
+ * all. Logins which are not checked are decided using only the active ban index, allowing or denying players
+ * depending on the configured {@link FallbackPolicy}.
+ */
+public final class LoginCheckGuard {
+
+	/**
+	 * What to do with a player when a login check can not be run.
+	 */
+	public enum FallbackPolicy {
+
+		/**
+		 * Allow the player to login unless the active ban index says they are banned.
+		 */
+		FAIL_OPEN,
+
+		/**
+		 * Deny the player from logging in.
+		 */
+		FAIL_CLOSED
+	}
+
+	private final Semaphore admissions;
+	private final CircuitBreaker circuitBreaker;
+	private final ExecutorService executor;
+	private final FallbackPolicy fallbackPolicy;
+	private final long latencyBudget;
+	private final Logger logger = PluginLoggerFactory.getLogger(LoginCheckGuard.class);
+
+	/**
+	 * @param circuitBreaker the breaker to use
+	 * @param latencyBudget how long a check may take, in milliseconds
+	 * @param fallbackPolicy what to do with players who can not be checked
+	 * @param concurrentChecks the maximum number of checks which may be run at the same time
+	 */
+	public LoginCheckGuard(CircuitBreaker circuitBreaker, long latencyBudget, FallbackPolicy fallbackPolicy, int concurrentChecks) {
+		if (concurrentChecks < 1) throw new IllegalArgumentException();
+		this.admissions = new Semaphore(concurrentChecks, true);
+		this.circuitBreaker = circuitBreaker;
+		this.latencyBudget = latencyBudget;
+		this.fallbackPolicy = fallbackPolicy;
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrentChecks, concurrentChecks, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new CheckThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		this.executor = executor;
+	}
+
+	/**
+	 * Run checks on an executor of their own, such as one starting a virtual thread for each check. Checks do not
+	 * share it with other database work, so a burst of logins is never turned away because commands are busy. The
+	 * executor is shut down with the guard.
+	 *
+	 * @param circuitBreaker the breaker to use
+	 * @param latencyBudget how long a check may take, in milliseconds
+	 * @param fallbackPolicy what to do with players who can not be checked
+	 * @param concurrentChecks the maximum number of checks which may be run at the same time
+	 * @param executor the executor to run checks on
+	 */
+	public LoginCheckGuard(CircuitBreaker circuitBreaker, long latencyBudget, FallbackPolicy fallbackPolicy, int concurrentChecks, ExecutorService executor) {
+		if (concurrentChecks < 1) throw new IllegalArgumentException();
+		this.admissions = new Semaphore(concurrentChecks, true);
+		this.circuitBreaker = circuitBreaker;
+		this.latencyBudget = latencyBudget;
+		this.fallbackPolicy = fallbackPolicy;
+		this.executor = executor;
+	}
+
+	/**
+	 * Run a login check within the latency budget.
+	 *
+	 * @param check the check to run
+	 * @return true if the check completed, false if the fallback policy should be applied
+	 */
+	public boolean check(Callable<?> check) {
+		if (!circuitBreaker.allowRequest()) return false;
+		try {
+			if (!admissions.tryAcquire(latencyBudget, TimeUnit.MILLISECONDS)) {
+				logger.log(Level.FINE, "Too many login checks are in progress.");
+				circuitBreaker.recordSkipped();
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			circuitBreaker.recordSkipped();
+			return false;
+		}
+		try {
+			return run(check);
+		} finally {
+			admissions.release();
+		}
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public FallbackPolicy getFallbackPolicy() {
+		return fallbackPolicy;
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private boolean run(Callable<?> check) {
+		final Future<?> future;
+		try {
+			future = executor.submit(check);
+		} catch (RejectedExecutionException e) {
+			logger.log(Level.FINE, "Login check was rejected by the executor.");
+			circuitBreaker.recordSkipped();
+			return false;
+		}
+		try {
+			future.get(latencyBudget, TimeUnit.MILLISECONDS);
+			circuitBreaker.recordSuccess();
+			return true;
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			logger.log(Level.WARNING, "Login check took longer than {0}ms and was abandoned.", latencyBudget);
+		} catch (ExecutionException e) {
+			logger.log(Level.WARNING, "Login check failed: {0}", e.getCause());
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+		}
+		circuitBreaker.recordFailure();
+		return false;
+	}
+
+	private static final class CheckThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "BanHammer login check " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * LoginDecisionHandoff.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.ban.event;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Passes ban decisions made during {@link org.bukkit.event.player.AsyncPlayerPreLoginEvent} on to the
+ * synchronous {@link org.bukkit.event.player.PlayerLoginEvent} that follows it.
+ * <p/>
+ * Decisions are keyed by the exact player name and are only valid for a short period of time. Taking a decision
+ * is a single map removal so it is safe to do on the main thread. Decisions which are never taken are removed a
+ * few at a time as new decisions are recorded.
+ */
+public final class LoginDecisionHandoff {
+
+	/** The decision recorded for players who are allowed to login. */
+	public static final String ALLOWED = "";
+
+	/** How long a decision remains valid for, in milliseconds. */
+	public static final long DEFAULT_TIME_TO_LIVE = 30000;
+
+	private final ConcurrentMap<String, Decision> decisions = new ConcurrentHashMap<String, Decision>();
+	private final Queue<Decision> expiries = new ConcurrentLinkedQueue<Decision>();
+	private final long timeToLive;
+
+	public LoginDecisionHandoff() {
+		this(DEFAULT_TIME_TO_LIVE);
+	}
+
+	public LoginDecisionHandoff(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Record a decision for a player.
+	 *
+	 * @param playerName the name of the player
+	 * @param message the kick message to use or {@link #ALLOWED} if the player may login
+	 */
+	public void put(String playerName, String message) {
+		final long now = System.currentTimeMillis();
+		this.removeExpired(now);
+		final Decision decision = new Decision(playerName, message, now + this.timeToLive);
+		this.decisions.put(playerName, decision);
+		this.expiries.add(decision);
+	}
+
+	public int size() {
+		return this.decisions.size();
+	}
+
+	/**
+	 * Take the decision recorded for a player.
+	 *
+	 * @param playerName the name of the player
+	 * @return the kick message, {@link #ALLOWED} or null if no decision is available
+	 */
+	public String take(String playerName) {
+		final Decision decision = this.decisions.remove(playerName);
+		if (decision == null || decision.expiresAt < System.currentTimeMillis()) return null;
+		return decision.message;
+	}
+
+	/**
+	 * Remove decisions which have expired.
+	 * <p/>
+	 * Every decision is valid for the same length of time, so they expire in the order they were recorded. Only the
+	 * expired decisions at the head of the queue are looked at and each is removed once, rather than checking every
+	 * decision on each call.
+	 */
+	private void removeExpired(long now) {
+		Decision decision;
+		while ((decision = this.expiries.peek()) != null && decision.expiresAt < now) {
+			// decisions which have been taken or replaced are left alone
+			if (this.expiries.remove(decision)) this.decisions.remove(decision.playerName, decision);
+		}
+	}
+
+	private static final class Decision {
+
+		private final long expiresAt;
+		private final String message;
+		private final String playerName;
+
+		private Decision(String playerName, String message, long expiresAt) {
+			this.playerName = playerName;
+			this.message = message;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+}
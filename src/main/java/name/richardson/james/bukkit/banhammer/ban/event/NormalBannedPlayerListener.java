@@ -12,30 +12,24 @@ import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 
-import name.richardson.james.bukkit.utilities.formatters.time.ApproximateTimeFormatter;
-import name.richardson.james.bukkit.utilities.formatters.time.TimeFormatter;
 import name.richardson.james.bukkit.utilities.listener.AbstractListener;
 import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
 
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
-import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
-import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
-
-import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.LISTENER_PLAYER_BANNED_PERMANENTLY;
-import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.LISTENER_PLAYER_BANNED_TEMPORARILY;
 
 
 public final class NormalBannedPlayerListener extends AbstractListener {
 
+	private final ActiveBanIndex activeBanIndex;
 	private final Logger logger = PluginLoggerFactory.getLogger(NormalBannedPlayerListener.class);
-	private final PlayerRecordManager playerRecordManager;
+	private final LoginDecisionHandoff loginDecisionHandoff = new LoginDecisionHandoff();
 	private final Server server;
-	private final TimeFormatter timeFormatter = new ApproximateTimeFormatter();
 
-	public NormalBannedPlayerListener(Plugin plugin, PluginManager pluginManager, Server server, PlayerRecordManager playerRecordManager) {
+	public NormalBannedPlayerListener(Plugin plugin, PluginManager pluginManager, Server server, ActiveBanIndex activeBanIndex) {
 		super(plugin, pluginManager);
 		this.server = server;
-		this.playerRecordManager = playerRecordManager;
+		this.activeBanIndex = activeBanIndex;
 	}
 
 	@EventHandler(priority = EventPriority.MONITOR)
@@ -47,49 +41,47 @@ public final class NormalBannedPlayerListener extends AbstractListener {
 		}
   }
 
+	/**
+	 * Apply the decision made for this player during pre-login.
+	 * <p/>
+	 * This runs on the main thread so it only takes the decision that has been handed off. The active ban index is
+	 * only consulted if no decision was made, for example if the server did not fire a pre-login event.
+	 */
 	@EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
 	public void onPlayerLogin(final PlayerLoginEvent event) {
 		if (server.getOnlineMode()) return;
 		if (event.getResult() == PlayerLoginEvent.Result.KICK_BANNED) return;
-		logger.log(Level.FINER, "Received " + event.getEventName());
 		final String playerName = event.getPlayer().getName();
-		if (this.isPlayerBanned(playerName)) {
-			final BanRecord record = this.playerRecordManager.find(playerName).getActiveBan();
-			final String message = this.getKickMessage(record);
-			event.disallow(PlayerLoginEvent.Result.KICK_BANNED, message);
+		String message = this.loginDecisionHandoff.take(playerName);
+		if (message == null) {
+			final BanRecord record = this.getActiveBan(playerName);
+			message = (record == null) ? LoginDecisionHandoff.ALLOWED : this.getKickMessage(record);
 		}
+		if (!message.isEmpty()) event.disallow(PlayerLoginEvent.Result.KICK_BANNED, message);
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
 	public void onPlayerLogin(final AsyncPlayerPreLoginEvent event) {
-		if (!server.getOnlineMode()) return;
 		if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.KICK_BANNED) return;
 		logger.log(Level.FINER, "Received " + event.getEventName());
 		final String playerName = event.getName();
-		if (this.isPlayerBanned(playerName)) {
-			final BanRecord record = this.playerRecordManager.find(playerName).getActiveBan();
-			final String message = this.getKickMessage(record);
-			event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, message);
+		final BanRecord record = this.getActiveBan(playerName);
+		final String message = (record == null) ? LoginDecisionHandoff.ALLOWED : this.getKickMessage(record);
+		if (server.getOnlineMode()) {
+			if (record != null) event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, message);
+		} else {
+			// in offline mode the decision is applied when the player actually logs in
+			this.loginDecisionHandoff.put(playerName, message);
 		}
 	}
 
 	private String getKickMessage(BanRecord record) {
-		switch (record.getType()) {
-			case TEMPORARY: {
-				String time = timeFormatter.getHumanReadableDuration(record.getExpiresAt().getTime());
-				return LISTENER_PLAYER_BANNED_TEMPORARILY.asErrorMessage(record.getReason(), record.getCreator().getName(), time);
-			}
-			default: {
-				return LISTENER_PLAYER_BANNED_PERMANENTLY.asErrorMessage(record.getReason(), record.getCreator().getName());
-			}
-		}
+		return this.activeBanIndex.getKickMessageCache().getKickMessage(record);
 	}
 
-	private boolean isPlayerBanned(String playerName) {
+	private BanRecord getActiveBan(String playerName) {
 		logger.log(Level.FINER, "Checking if {0} is banned.", playerName);
-		if (!this.playerRecordManager.exists(playerName)) return false;
-		PlayerRecord record = this.playerRecordManager.find(playerName);
-		return record.isBanned();
+		return this.activeBanIndex.get(playerName);
 	}
 
 }
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanCreatedAtIndexMigration.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+/**
+ * Indexes bans by creation time and id so listings can seek to a page instead of scanning past earlier ones.
+ */
+public class BanCreatedAtIndexMigration implements Migration {
+
+	@Override
+	public String getDescription() {
+		return "Index bans by creation time for paging";
+	}
+
+	@Override
+	public int getVersion() {
+		return 4;
+	}
+
+	@Override
+	public void migrate(SchemaEditor editor) {
+		editor.createIndex("ix_banhammer_bans_created_at_id", "banhammer_bans", "created_at, id", false);
+		editor.createIndex("ix_banhammer_bans_player_id_created_at_id", "banhammer_bans", "player_id, created_at, id", false);
+	}
+
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanStateIndexMigration.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+/**
+ * Indexes the state and expiry time of bans so active bans can be found by the database.
+ */
+public class BanStateIndexMigration implements Migration {
+
+	@Override
+	public String getDescription() {
+		return "Index the state and expiry time of bans";
+	}
+
+	@Override
+	public int getVersion() {
+		return 2;
+	}
+
+	@Override
+	public void migrate(SchemaEditor editor) {
+		editor.createIndex("ix_banhammer_bans_state_expires_at", "banhammer_bans", "state, expires_at", false);
+	}
+
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BanStatisticsMigration.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import name.richardson.james.bukkit.banhammer.ban.BanStatisticsManager;
+
+/**
+ * Creates the table of ban counts for each creator and fills it from the existing bans.
+ */
+public class BanStatisticsMigration implements Migration {
+
+	@Override
+	public String getDescription() {
+		return "Create the ban statistics table";
+	}
+
+	@Override
+	public int getVersion() {
+		return 3;
+	}
+
+	@Override
+	public void migrate(SchemaEditor editor) {
+		if (!editor.tableExists(BanStatisticsManager.TABLE)) {
+			editor.execute("CREATE TABLE " + BanStatisticsManager.TABLE + " (creator_id INTEGER NOT NULL, ban_type INTEGER NOT NULL, " +
+				"ban_state INTEGER NOT NULL, bans INTEGER NOT NULL, PRIMARY KEY (creator_id, ban_type, ban_state))");
+		}
+		new BanStatisticsManager(editor.getDatabase()).repair();
+	}
+
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * BatchWriter.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.util.Collection;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.Transaction;
+import com.avaje.ebean.TxRunnable;
+
+/**
+ * Saves several beans in a single transaction using JDBC batching.
+ * <p/>
+ * Transactions use the isolation level configured in database.yml, as not every database supports every level. If
+ * the calling thread already has an active transaction the beans are written as part of it instead, and it is left
+ * to the caller to commit.
+ */
+public final class BatchWriter {
+
+	/** The number of statements sent to the database in each batch. */
+	public static final int BATCH_SIZE = 100;
+
+	private BatchWriter() {}
+
+	/**
+	 * Save beans in one transaction.
+	 *
+	 * @param database the database to save to
+	 * @param beans the beans to save
+	 * @return the number of beans saved, as either every bean is saved or none are
+	 */
+	public static int save(EbeanServer database, Collection<?> beans) {
+		return save(database, beans, null);
+	}
+
+	/**
+	 * Save beans in one transaction and then make further changes before it is committed.
+	 *
+	 * @param database the database to save to
+	 * @param beans the beans to save
+	 * @param inTransaction the further changes to make, or null if there are none
+	 * @return the number of beans saved
+	 */
+	public static int save(EbeanServer database, Collection<?> beans, TxRunnable inTransaction) {
+		return write(database, beans, false, inTransaction);
+	}
+
+	/**
+	 * Delete beans in one transaction and then make further changes before it is committed.
+	 *
+	 * @param database the database to delete from
+	 * @param beans the beans to delete
+	 * @param inTransaction the further changes to make, or null if there are none
+	 * @return the number of beans deleted
+	 */
+	public static int delete(EbeanServer database, Collection<?> beans, TxRunnable inTransaction) {
+		return write(database, beans, true, inTransaction);
+	}
+
+	/**
+	 * Make changes in one transaction.
+	 *
+	 * @param database the database to change
+	 * @param changes the changes to make
+	 */
+	public static void execute(EbeanServer database, TxRunnable changes) {
+		if (isJoinable(database.currentTransaction())) {
+			changes.run();
+			return;
+		}
+		database.beginTransaction();
+		try {
+			changes.run();
+			database.commitTransaction();
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+	private static void configure(Transaction transaction) {
+		transaction.setBatchMode(true);
+		transaction.setBatchSize(BATCH_SIZE);
+		transaction.setBatchGetGeneratedKeys(true);
+	}
+
+	private static boolean isJoinable(Transaction transaction) {
+		return transaction != null && transaction.isActive();
+	}
+
+	private static int write(EbeanServer database, Collection<?> beans, boolean delete, TxRunnable inTransaction) {
+		if (beans.isEmpty()) return 0;
+		// join a transaction which has already been begun, such as a group commit, and leave committing it to its owner
+		final Transaction current = database.currentTransaction();
+		final boolean isJoined = isJoinable(current);
+		final Transaction transaction = isJoined ? current : database.beginTransaction();
+		try {
+			configure(transaction);
+			for (Object bean : beans) {
+				if (delete) {
+					database.delete(bean, transaction);
+				} else {
+					database.save(bean, transaction);
+				}
+			}
+			// further changes may depend on the number of rows they update so they are not batched
+			transaction.flushBatch();
+			if (inTransaction != null) {
+				transaction.setBatchMode(false);
+				inTransaction.run();
+			}
+			if (!isJoined) database.commitTransaction();
+			return beans.size();
+		} finally {
+			if (!isJoined) database.endTransaction();
+		}
+	}
+
+}
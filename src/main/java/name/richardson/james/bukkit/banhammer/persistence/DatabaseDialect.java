@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * DatabaseDialect.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.util.Locale;
+
+/**
+ * The databases which migrations know how to handle.
+ */
+public enum DatabaseDialect {
+
+	MYSQL,
+
+	SQLITE,
+
+	/**
+	 * Any other database. Only standard SQL is used.
+	 */
+	OTHER;
+
+	public static DatabaseDialect fromProductName(String productName) {
+		final String name = productName.toLowerCase(Locale.ENGLISH);
+		if (name.contains("mysql")) return MYSQL;
+		if (name.contains("sqlite")) return SQLITE;
+		return OTHER;
+	}
+
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * DatabaseWriter.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.util.Collection;
+
+import com.avaje.ebean.TxRunnable;
+
+/**
+ * Writes changes to the database on behalf of the record managers.
+ * <p/>
+ * Every method blocks until its changes have been committed.
+ */
+public interface DatabaseWriter {
+
+	/**
+	 * Delete beans and then make further changes in the same transaction.
+	 *
+	 * @param beans the beans to delete
+	 * @param inTransaction the further changes to make, or null if there are none
+	 * @return the number of beans deleted
+	 */
+	int delete(Collection<?> beans, TxRunnable inTransaction);
+
+	/**
+	 * Make changes in one transaction.
+	 *
+	 * @param changes the changes to make
+	 */
+	void execute(TxRunnable changes);
+
+	/**
+	 * Save beans and then make further changes in the same transaction.
+	 *
+	 * @param beans the beans to save
+	 * @param inTransaction the further changes to make, or null if there are none
+	 * @return the number of beans saved
+	 */
+	int save(Collection<?> beans, TxRunnable inTransaction);
+
+	/**
+	 * Stop accepting writes, finishing any which have already been accepted.
+	 */
+	void shutdown();
+
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * DirectDatabaseWriter.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.util.Collection;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.TxRunnable;
+
+/**
+ * Writes changes on the calling thread, each in its own transaction.
+ */
+public class DirectDatabaseWriter implements DatabaseWriter {
+
+	private final EbeanServer database;
+
+	public DirectDatabaseWriter(EbeanServer database) {
+		if (database == null) throw new IllegalArgumentException();
+		this.database = database;
+	}
+
+	@Override
+	public int delete(Collection<?> beans, TxRunnable inTransaction) {
+		return BatchWriter.delete(this.database, beans, inTransaction);
+	}
+
+	@Override
+	public void execute(TxRunnable changes) {
+		BatchWriter.execute(this.database, changes);
+	}
+
+	@Override
+	public int save(Collection<?> beans, TxRunnable inTransaction) {
+		return BatchWriter.save(this.database, beans, inTransaction);
+	}
+
+	@Override
+	public void shutdown() {
+		// there is nothing to finish as every write is made by its caller
+	}
+
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * GroupCommitWriter.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.Transaction;
+import com.avaje.ebean.TxRunnable;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Makes every write on a single thread, committing writes which are queued together in one transaction.
+ * <p/>
+ * Databases such as SQLite only allow one writer at a time, so concurrent writers either wait for the lock or fail
+ * because the database is busy. Here callers queue their writes and wait. The writer thread collects the writes
+ * queued within the commit interval and makes them in one transaction, so a burst of bans costs a single commit.
+ * <p/>
+ * Each write is made within its own savepoint, so a write which fails is rolled back and reported to its caller
+ * without affecting the others in the group. If the commit itself fails every write in the group fails. Not every
+ * JDBC driver supports savepoints, so check {@link #isSupported(EbeanServer)} before using this writer.
+ */
+public class GroupCommitWriter implements DatabaseWriter {
+
+	/** The maximum number of writes committed together. */
+	public static final int MAXIMUM_GROUP_SIZE = 256;
+
+	/** How long to wait for queued writes to be committed when shutting down, in seconds. */
+	public static final int SHUTDOWN_TIMEOUT = 10;
+
+	private final long commitInterval;
+	private final EbeanServer database;
+	private final Object lock = new Object();
+	private final Logger logger = PluginLoggerFactory.getLogger(GroupCommitWriter.class);
+	private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<PendingWrite<?>>();
+	private final Thread thread;
+	private boolean isRunning = true;
+
+	/**
+	 * @param database the database to write to
+	 * @param commitInterval how long to wait for more writes before committing, in milliseconds
+	 */
+	public GroupCommitWriter(EbeanServer database, long commitInterval) {
+		if (database == null || commitInterval < 0) throw new IllegalArgumentException();
+		this.database = database;
+		this.commitInterval = TimeUnit.MILLISECONDS.toNanos(commitInterval);
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				GroupCommitWriter.this.run();
+			}
+		}, "BanHammer database writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Check if a database supports the savepoints each write is made within.
+	 * <p/>
+	 * Some drivers report savepoints as supported but fail when one is set, so one is set and released as a test.
+	 *
+	 * @param database the database to check
+	 * @return true if savepoints can be used
+	 */
+	public static boolean isSupported(EbeanServer database) {
+		final Transaction transaction = database.beginTransaction();
+		try {
+			final Connection connection = transaction.getConnection();
+			if (!connection.getMetaData().supportsSavepoints()) return false;
+			connection.releaseSavepoint(connection.setSavepoint());
+			return true;
+		} catch (SQLException e) {
+			return false;
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+	@Override
+	public int delete(final Collection<?> beans, final TxRunnable inTransaction) {
+		return this.write(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return BatchWriter.delete(database, beans, inTransaction);
+			}
+		});
+	}
+
+	@Override
+	public void execute(final TxRunnable changes) {
+		this.write(new Callable<Object>() {
+			@Override
+			public Object call() {
+				BatchWriter.execute(database, changes);
+				return null;
+			}
+		});
+	}
+
+	public int getQueueSize() {
+		return this.queue.size();
+	}
+
+	@Override
+	public int save(final Collection<?> beans, final TxRunnable inTransaction) {
+		return this.write(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return BatchWriter.save(database, beans, inTransaction);
+			}
+		});
+	}
+
+	/**
+	 * Stop accepting writes and wait for those already queued to be committed. Writes made after this are made on
+	 * the calling thread.
+	 */
+	@Override
+	public void shutdown() {
+		synchronized (this.lock) {
+			this.isRunning = false;
+		}
+		try {
+			this.thread.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT));
+			if (this.thread.isAlive()) logger.log(Level.WARNING, "Queued writes were not committed within {0} seconds.", SHUTDOWN_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void collect(List<PendingWrite<?>> group)
+	throws InterruptedException {
+		final PendingWrite<?> first = this.queue.poll(1, TimeUnit.SECONDS);
+		if (first == null) return;
+		group.add(first);
+		// wait briefly for more writes so they can share the commit
+		final long deadline = System.nanoTime() + this.commitInterval;
+		while (group.size() < MAXIMUM_GROUP_SIZE) {
+			final long remaining = deadline - System.nanoTime();
+			final PendingWrite<?> next = (remaining > 0) ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : this.queue.poll();
+			if (next == null) return;
+			group.add(next);
+		}
+	}
+
+	private void commit(List<PendingWrite<?>> group) {
+		RuntimeException failure = null;
+		final Transaction transaction = this.database.beginTransaction();
+		try {
+			for (PendingWrite<?> write : group) {
+				write.run(transaction);
+			}
+			this.database.commitTransaction();
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Unable to commit a group of " + group.size() + " writes.", e);
+			failure = e;
+		} finally {
+			this.database.endTransaction();
+		}
+		// callers are only released once their writes have been committed
+		for (PendingWrite<?> write : group) {
+			write.finish(failure);
+		}
+	}
+
+	private void run() {
+		final List<PendingWrite<?>> group = new ArrayList<PendingWrite<?>>(MAXIMUM_GROUP_SIZE);
+		while (true) {
+			synchronized (this.lock) {
+				if (!this.isRunning && this.queue.isEmpty()) return;
+			}
+			try {
+				this.collect(group);
+			} catch (InterruptedException e) {
+				logger.log(Level.FINE, "Writer interrupted while waiting for writes.");
+			}
+			if (!group.isEmpty()) this.commit(group);
+			group.clear();
+		}
+	}
+
+	private <T> T write(Callable<T> write) {
+		final PendingWrite<T> pending = new PendingWrite<T>(write);
+		// writes made by other writes, such as a fallback after a failed insert, join the group being committed
+		if (Thread.currentThread() == this.thread) return PendingWrite.call(write);
+		synchronized (this.lock) {
+			if (!this.isRunning) return PendingWrite.call(write);
+			this.queue.add(pending);
+		}
+		return pending.get();
+	}
+
+	private static final class PendingWrite<T> {
+
+		private final CountDownLatch committed = new CountDownLatch(1);
+		private final Callable<T> write;
+		private RuntimeException failure;
+		private T result;
+
+		private PendingWrite(Callable<T> write) {
+			this.write = write;
+		}
+
+		private static <T> T call(Callable<T> write) {
+			try {
+				return write.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new PersistenceException(e);
+			}
+		}
+
+		private void finish(RuntimeException groupFailure) {
+			if (this.failure == null) this.failure = groupFailure;
+			this.committed.countDown();
+		}
+
+		private T get() {
+			boolean isInterrupted = false;
+			while (true) {
+				try {
+					this.committed.await();
+					break;
+				} catch (InterruptedException e) {
+					// the write can not be withdrawn once queued, so wait for it regardless
+					isInterrupted = true;
+				}
+			}
+			if (isInterrupted) Thread.currentThread().interrupt();
+			if (this.failure != null) throw this.failure;
+			return this.result;
+		}
+
+		private void run(Transaction transaction) {
+			final Connection connection = transaction.getConnection();
+			final Savepoint savepoint;
+			try {
+				savepoint = connection.setSavepoint();
+			} catch (SQLException e) {
+				throw new PersistenceException(e);
+			}
+			try {
+				this.result = call(this.write);
+				connection.releaseSavepoint(savepoint);
+			} catch (RuntimeException e) {
+				this.failure = e;
+				rollback(connection, savepoint);
+			} catch (SQLException e) {
+				this.failure = new PersistenceException(e);
+				rollback(connection, savepoint);
+			}
+		}
+
+		private static void rollback(Connection connection, Savepoint savepoint) {
+			try {
+				connection.rollback(savepoint);
+			} catch (SQLException e) {
+				throw new PersistenceException(e);
+			}
+		}
+
+	}
+
+}
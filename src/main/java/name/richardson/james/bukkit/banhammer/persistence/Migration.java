@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * Migration.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+/**
+ * A change to the database schema.
+ * <p/>
+ * Migrations are applied in order of their version and each one is only applied once to a database. Migrations
+ * should check whether their changes already exist, for example in databases created from the current entity
+ * classes, and skip them if so.
+ */
+public interface Migration {
+
+	String getDescription();
+
+	/**
+	 * @return the version of the schema once this migration has been applied.
+	 */
+	int getVersion();
+
+	void migrate(SchemaEditor editor);
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * MigrationRunner.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.Transaction;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Applies migrations which have not been applied to a database yet.
+ * <p/>
+ * The version of the schema is recorded in its own table and a row is added once each migration has been
+ * applied. If a migration fails the remaining migrations are not applied and the exception is rethrown.
+ */
+public class MigrationRunner {
+
+	public static final String SCHEMA_VERSION_TABLE = "banhammer_schema_version";
+
+	private final EbeanServer database;
+	private final Logger logger = PluginLoggerFactory.getLogger(MigrationRunner.class);
+	private final List<Migration> migrations;
+
+	public MigrationRunner(EbeanServer database, Collection<? extends Migration> migrations) {
+		this.database = database;
+		this.migrations = new ArrayList<Migration>(migrations);
+		Collections.sort(this.migrations, new Comparator<Migration>() {
+			@Override
+			public int compare(Migration a, Migration b) {
+				return (a.getVersion() < b.getVersion()) ? -1 : ((a.getVersion() == b.getVersion()) ? 0 : 1);
+			}
+		});
+	}
+
+	public DatabaseDialect getDialect() {
+		final Transaction transaction = database.beginTransaction();
+		try {
+			return DatabaseDialect.fromProductName(transaction.getConnection().getMetaData().getDatabaseProductName());
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+	/**
+	 * @return the version of the database schema, or 0 if no migrations have been applied.
+	 */
+	public int getVersion() {
+		final SqlRow row = database.createSqlQuery("SELECT MAX(version) AS version FROM " + SCHEMA_VERSION_TABLE).findUnique();
+		final Integer version = (row == null) ? null : row.getInteger("version");
+		return (version == null) ? 0 : version;
+	}
+
+	/**
+	 * Apply every migration newer than the current version of the schema.
+	 *
+	 * @return the number of migrations applied
+	 */
+	public int migrate() {
+		final SchemaEditor editor = new SchemaEditor(database, this.getDialect());
+		if (!editor.tableExists(SCHEMA_VERSION_TABLE)) {
+			editor.execute("CREATE TABLE " + SCHEMA_VERSION_TABLE + " (version INTEGER NOT NULL PRIMARY KEY, description VARCHAR(255) NOT NULL, applied_at TIMESTAMP NOT NULL)");
+		}
+		final int current = this.getVersion();
+		int applied = 0;
+		for (Migration migration : migrations) {
+			if (migration.getVersion() <= current) continue;
+			logger.log(Level.INFO, "Migrating database to version {0}: {1}", new Object[]{migration.getVersion(), migration.getDescription()});
+			migration.migrate(editor);
+			database.createSqlUpdate("INSERT INTO " + SCHEMA_VERSION_TABLE + " (version, description, applied_at) VALUES (:version, :description, :appliedAt)")
+			.setParameter("version", migration.getVersion())
+			.setParameter("description", migration.getDescription())
+			.setParameter("appliedAt", new Timestamp(System.currentTimeMillis()))
+			.execute();
+			applied++;
+		}
+		logger.log(Level.FINE, "Database schema is at version {0}.", this.getVersion());
+		return applied;
+	}
+
+}
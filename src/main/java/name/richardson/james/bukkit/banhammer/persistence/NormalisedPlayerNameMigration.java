@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * NormalisedPlayerNameMigration.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Adds the normalised name column to the players table of databases created by older versions of BanHammer.
+ * <p/>
+ * Player records with names which only differ by case are merged into the oldest record before the unique index
+ * is created. Bans made by, or against, the duplicate records are moved to the record which is kept.
+ * <p/>
+ * Every step can be repeated safely, so a migration which failed part way through is finished when it is run again.
+ */
+public class NormalisedPlayerNameMigration implements Migration {
+
+	private final Logger logger = PluginLoggerFactory.getLogger(NormalisedPlayerNameMigration.class);
+
+	@Override
+	public String getDescription() {
+		return "Add a unique normalised name to players";
+	}
+
+	@Override
+	public int getVersion() {
+		return 1;
+	}
+
+	@Override
+	public void migrate(SchemaEditor editor) {
+		if (!editor.columnExists("banhammer_players", "normalised_name")) {
+			editor.execute("ALTER TABLE banhammer_players ADD COLUMN normalised_name VARCHAR(255)");
+		}
+		editor.updateInChunks("banhammer_players", "UPDATE banhammer_players SET normalised_name = LOWER(name) WHERE normalised_name IS NULL AND id BETWEEN :start AND :end");
+		final EbeanServer database = editor.getDatabase();
+		database.beginTransaction();
+		try {
+			final int merged = this.mergeDuplicates(database);
+			database.commitTransaction();
+			logger.log(Level.INFO, "Merged {0} duplicate player records.", merged);
+		} finally {
+			database.endTransaction();
+		}
+		// databases created from the current entity classes already have a unique constraint on the column
+		if (!editor.uniqueIndexExists("banhammer_players", "normalised_name")) {
+			editor.createIndex("uq_banhammer_players_normalised_name", "banhammer_players", "normalised_name", true);
+		}
+	}
+
+	private int mergeDuplicates(EbeanServer database) {
+		final List<SqlRow> rows = database.createSqlQuery("SELECT normalised_name, MIN(id) AS id FROM banhammer_players GROUP BY normalised_name HAVING COUNT(*) > 1").findList();
+		int merged = 0;
+		for (SqlRow row : rows) {
+			final String name = row.getString("normalised_name");
+			final Integer id = row.getInteger("id");
+			final String duplicates = "SELECT id FROM banhammer_players WHERE normalised_name = :name AND id <> :id";
+			database.createSqlUpdate("UPDATE banhammer_bans SET player_id = :id WHERE player_id IN (" + duplicates + ")").setParameter("id", id).setParameter("name", name).execute();
+			database.createSqlUpdate("UPDATE banhammer_bans SET creator_id = :id WHERE creator_id IN (" + duplicates + ")").setParameter("id", id).setParameter("name", name).execute();
+			merged += database.createSqlUpdate("DELETE FROM banhammer_players WHERE normalised_name = :name AND id <> :id").setParameter("id", id).setParameter("name", name).execute();
+		}
+		return merged;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * SchemaEditor.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.Transaction;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Makes changes to the schema of a database on behalf of migrations.
+ * <p/>
+ * Changes are made so they hold locks for as little time as possible. Indexes are built in place on MySQL where
+ * the server supports it and bulk updates are split into chunks which are committed separately.
+ */
+public class SchemaEditor {
+
+	/** The number of rows changed by each chunk of a bulk update. */
+	public static final int DEFAULT_CHUNK_SIZE = 5000;
+
+	private final EbeanServer database;
+	private final DatabaseDialect dialect;
+	private final Logger logger = PluginLoggerFactory.getLogger(SchemaEditor.class);
+
+	public SchemaEditor(EbeanServer database, DatabaseDialect dialect) {
+		this.database = database;
+		this.dialect = dialect;
+	}
+
+	public boolean columnExists(String table, String column) {
+		try {
+			database.createSqlQuery("SELECT " + column + " FROM " + table + " WHERE 1 = 0").findList();
+			return true;
+		} catch (PersistenceException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Create an index if an index with the same name does not already exist.
+	 *
+	 * @param name the name of the index
+	 * @param table the table to index
+	 * @param columns the columns to index, separated by commas
+	 * @param unique if the index should be unique
+	 */
+	public void createIndex(String name, String table, String columns, boolean unique) {
+		if (this.indexExists(table, name)) return;
+		final String type = unique ? "UNIQUE INDEX " : "INDEX ";
+		if (dialect == DatabaseDialect.MYSQL) {
+			try {
+				// build the index without blocking writes to the table
+				this.execute("ALTER TABLE " + table + " ADD " + type + name + " (" + columns + "), ALGORITHM=INPLACE, LOCK=NONE");
+				return;
+			} catch (PersistenceException e) {
+				logger.log(Level.FINE, "Unable to build {0} in place, falling back to CREATE INDEX.", name);
+			}
+		}
+		this.execute("CREATE " + type + name + " ON " + table + " (" + columns + ")");
+	}
+
+	public int execute(String sql) {
+		logger.log(Level.FINE, "Executing {0}", sql);
+		return database.createSqlUpdate(sql).execute();
+	}
+
+	public EbeanServer getDatabase() {
+		return database;
+	}
+
+	public DatabaseDialect getDialect() {
+		return dialect;
+	}
+
+	public boolean indexExists(String table, String name) {
+		return this.getIndexes(table, false).containsKey(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	public boolean tableExists(String table) {
+		try {
+			database.createSqlQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").findList();
+			return true;
+		} catch (PersistenceException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Check if a unique index covers a single column, whatever the index is called.
+	 *
+	 * @param table the table to check
+	 * @param column the column the index must cover on its own
+	 * @return true if the column is unique
+	 */
+	public boolean uniqueIndexExists(String table, String column) {
+		for (List<String> columns : this.getIndexes(table, true).values()) {
+			if (columns.size() == 1 && column.equalsIgnoreCase(columns.get(0))) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Run an update over every row of a table in chunks.
+	 * <p/>
+	 * The update must restrict itself to the rows with ids between the named parameters {@code :start} and
+	 * {@code :end} inclusive. Each chunk is committed on its own.
+	 *
+	 * @param table the table to update
+	 * @param sql the update to run
+	 * @return the number of rows updated
+	 */
+	public int updateInChunks(String table, String sql) {
+		final SqlRow bounds = database.createSqlQuery("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM " + table).findUnique();
+		if (bounds == null || bounds.getLong("min_id") == null) return 0;
+		final long last = bounds.getLong("max_id");
+		int updated = 0;
+		for (long start = bounds.getLong("min_id"); start <= last; start += DEFAULT_CHUNK_SIZE) {
+			updated += database.createSqlUpdate(sql).setParameter("start", start).setParameter("end", start + DEFAULT_CHUNK_SIZE - 1).execute();
+		}
+		logger.log(Level.FINE, "Updated {0} rows of {1}.", new Object[]{updated, table});
+		return updated;
+	}
+
+	/**
+	 * Read the indexes of a table.
+	 *
+	 * @return the columns of each index, keyed by the index name in lowercase
+	 */
+	private Map<String, List<String>> getIndexes(String table, boolean unique) {
+		final Map<String, List<String>> indexes = new HashMap<String, List<String>>();
+		final Transaction transaction = database.beginTransaction();
+		try {
+			final DatabaseMetaData metaData = transaction.getConnection().getMetaData();
+			final ResultSet rows = metaData.getIndexInfo(null, null, table, unique, true);
+			try {
+				while (rows.next()) {
+					final String name = rows.getString("INDEX_NAME");
+					if (name == null) continue;
+					final String key = name.toLowerCase(Locale.ENGLISH);
+					if (!indexes.containsKey(key)) indexes.put(key, new ArrayList<String>());
+					indexes.get(key).add(rows.getString("COLUMN_NAME"));
+				}
+				return indexes;
+			} finally {
+				rows.close();
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * SqliteJournal.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.Transaction;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Changes how SQLite journals its writes.
+ * <p/>
+ * In write ahead log mode readers see the last committed state of the database while a write is in progress,
+ * instead of waiting for the writer to release its lock. The mode is stored in the database file so it only needs
+ * to be set once.
+ */
+public final class SqliteJournal {
+
+	private static final Logger LOGGER = PluginLoggerFactory.getLogger(SqliteJournal.class);
+
+	private SqliteJournal() {}
+
+	/**
+	 * Switch the database to write ahead log mode.
+	 *
+	 * @param database the database to switch
+	 * @return the journal mode in use afterwards, which is "wal" if it was switched
+	 */
+	public static String enableWriteAheadLog(EbeanServer database) {
+		final Transaction transaction = database.beginTransaction();
+		try {
+			final Connection connection = transaction.getConnection();
+			// the journal mode can not be changed within a transaction
+			connection.setAutoCommit(true);
+			try {
+				final Statement statement = connection.createStatement();
+				try {
+					final ResultSet result = statement.executeQuery("PRAGMA journal_mode=WAL");
+					final String mode = result.next() ? result.getString(1) : null;
+					LOGGER.log(Level.FINE, "SQLite journal mode is {0}.", mode);
+					return mode;
+				} finally {
+					statement.close();
+				}
+			} finally {
+				connection.setAutoCommit(false);
+			}
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+}
@@ -7,7 +7,6 @@ import java.util.TreeSet;
 
 import name.richardson.james.bukkit.utilities.command.argument.suggester.Suggester;
 
-import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
 
 public class PlayerRecordMatcher implements Suggester {
@@ -27,11 +26,7 @@ public class PlayerRecordMatcher implements Suggester {
 		if (argument.length() < MINIMUM_ARGUMENT_LENGTH) return Collections.emptySet();
 		TreeSet<String> results = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
 		argument = argument.toLowerCase(Locale.ENGLISH);
-		for (PlayerRecord playerRecord : playerRecordManager.list(argument, mode)) {
-			if (results.size() == Suggester.MAX_MATCHES) break;
-			if (!playerRecord.getName().toLowerCase(Locale.ENGLISH).startsWith(argument)) continue;
-			results.add(playerRecord.getName());
-		}
+		results.addAll(playerRecordManager.listNames(argument, mode, Suggester.MAX_MATCHES));
 		return results;
 	}
 
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * CircuitBreaker.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+/**
+ * A circuit breaker which stops calls being made to a resource which keeps failing.
+ * <p/>
+ * The breaker opens once a number of calls have failed in a row. While it is open no calls are allowed until the
+ * open time has passed, after which a single trial call is allowed. If the trial call succeeds the breaker closes
+ * again, otherwise it stays open for another period. Every call which is allowed must report its result with
+ * {@link #recordSuccess()}, {@link #recordFailure()} or {@link #recordSkipped()}.
+ */
+public final class CircuitBreaker {
+
+	public enum State {
+
+		/**
+		 * Calls are allowed.
+		 */
+		CLOSED,
+
+		/**
+		 * Calls are not allowed.
+		 */
+		OPEN,
+
+		/**
+		 * A single trial call has been allowed.
+		 */
+		HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openTime;
+
+	private int failures;
+	private long fallbacks;
+	private long openedAt;
+	private State state = State.CLOSED;
+	private long trips;
+
+	/**
+	 * @param failureThreshold the number of failures in a row which will open the breaker
+	 * @param openTime how long the breaker stays open for, in milliseconds
+	 */
+	public CircuitBreaker(int failureThreshold, long openTime) {
+		if (failureThreshold < 1 || openTime < 0) throw new IllegalArgumentException();
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+	}
+
+	/**
+	 * Check if a call may be made.
+	 * <p/>
+	 * Callers which are refused must use a fallback instead of making the call.
+	 *
+	 * @return true if the call may be made
+	 */
+	public synchronized boolean allowRequest() {
+		if (this.state == State.CLOSED) return true;
+		if (this.state == State.OPEN && System.currentTimeMillis() - this.openedAt >= this.openTime) {
+			this.state = State.HALF_OPEN;
+			return true;
+		}
+		this.fallbacks++;
+		return false;
+	}
+
+	/**
+	 * @return the number of calls which were refused or failed and had to use a fallback
+	 */
+	public synchronized long getFallbackCount() {
+		return this.fallbacks;
+	}
+
+	public synchronized State getState() {
+		return this.state;
+	}
+
+	/**
+	 * @return the number of times the breaker has opened
+	 */
+	public synchronized long getTripCount() {
+		return this.trips;
+	}
+
+	public synchronized void recordFailure() {
+		this.fallbacks++;
+		this.failures++;
+		if (this.state == State.HALF_OPEN || (this.state == State.CLOSED && this.failures >= this.failureThreshold)) {
+			this.state = State.OPEN;
+			this.openedAt = System.currentTimeMillis();
+			this.trips++;
+		}
+	}
+
+	/**
+	 * Record a call which was allowed but never made, such as one turned away because too many calls were already
+	 * being made.
+	 * <p/>
+	 * The call tells nothing about the resource, so it does not count as a failure. If it was the trial call the
+	 * breaker goes back to being open, without starting another period, so the next call is allowed as the trial.
+	 */
+	public synchronized void recordSkipped() {
+		this.fallbacks++;
+		if (this.state == State.HALF_OPEN) this.state = State.OPEN;
+	}
+
+	public synchronized void recordSuccess() {
+		this.failures = 0;
+		this.state = State.CLOSED;
+	}
+
+}
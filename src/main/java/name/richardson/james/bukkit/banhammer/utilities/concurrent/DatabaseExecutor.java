@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * DatabaseExecutor.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Runs database work on a dedicated, bounded pool of I/O threads and hands the results back to the main thread.
+ * <p/>
+ * The pool has a fixed number of threads and a bounded queue. When the queue is full new tasks fail immediately
+ * rather than piling up behind a slow database.
+ * <p/>
+ * In {@link Mode#VIRTUAL virtual} mode each task is given its own virtual thread instead and a semaphore limits how
+ * many of them may use the database at once. Tasks waiting for the database then cost almost nothing, although the
+ * number which may wait is still bounded.
+ * <p/>
+ * Work can be submitted either as a {@link DatabaseTask} or directly to the {@link #getExecutorService() executor
+ * service}, in which case {@link #onMainThread(ListenableFuture, FutureCallback)} hands the result back.
+ */
+public class DatabaseExecutor {
+
+	/**
+	 * The kind of threads database work is run on.
+	 */
+	public enum Mode {
+
+		/**
+		 * Run tasks on a fixed pool of platform threads.
+		 */
+		PLATFORM,
+
+		/**
+		 * Run each task on a new virtual thread, limiting how many may use the database at once. Only supported on
+		 * Java 21 and later runtimes.
+		 */
+		VIRTUAL
+	}
+
+	/** How long to wait for queued work to finish when shutting down, in seconds. */
+	public static final int SHUTDOWN_TIMEOUT = 10;
+
+	private final ListeningExecutorService executor;
+	private final Logger logger = PluginLoggerFactory.getLogger(DatabaseExecutor.class);
+	private final MainThreadExecutor mainThreadExecutor;
+	private final Mode mode;
+	private final int threads;
+
+	/**
+	 * @param threads the number of I/O threads
+	 * @param queueSize the number of tasks which may wait for a thread
+	 * @param mainThreadExecutor the executor which runs the main thread part of each task
+	 */
+	public DatabaseExecutor(int threads, int queueSize, MainThreadExecutor mainThreadExecutor) {
+		this(Mode.PLATFORM, threads, queueSize, mainThreadExecutor);
+	}
+
+	/**
+	 * If virtual threads are not supported by the runtime platform threads are used instead.
+	 *
+	 * @param mode the kind of threads to use
+	 * @param threads the number of I/O threads, or in virtual mode the number of tasks which may run at the same time
+	 * @param queueSize the number of tasks which may wait for a thread
+	 * @param mainThreadExecutor the executor which runs the main thread part of each task
+	 */
+	public DatabaseExecutor(Mode mode, int threads, int queueSize, MainThreadExecutor mainThreadExecutor) {
+		if (threads < 1 || queueSize < 1) throw new IllegalArgumentException();
+		if (mode == Mode.VIRTUAL && !VirtualThreads.isSupported()) {
+			logger.log(Level.WARNING, "Virtual threads are not supported by this runtime, using platform threads instead.");
+			mode = Mode.PLATFORM;
+		}
+		if (mode == Mode.VIRTUAL) {
+			this.executor = MoreExecutors.listeningDecorator(new SemaphoreExecutorService(VirtualThreads.newThreadPerTaskExecutor(), threads, queueSize));
+		} else {
+			this.executor = MoreExecutors.listeningDecorator(new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new IOThreadFactory()));
+		}
+		this.mainThreadExecutor = mainThreadExecutor;
+		this.mode = mode;
+		this.threads = threads;
+	}
+
+	public ListeningExecutorService getExecutorService() {
+		return this.executor;
+	}
+
+	public MainThreadExecutor getMainThreadExecutor() {
+		return this.mainThreadExecutor;
+	}
+
+	public Mode getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * @return the number of I/O threads, or in virtual mode the number of tasks which may run at the same time
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/**
+	 * Run a callback on the main thread once a future has completed.
+	 *
+	 * @param future the future to wait for
+	 * @param callback the callback to run with the result or failure of the future
+	 */
+	public <T> void onMainThread(ListenableFuture<T> future, FutureCallback<? super T> callback) {
+		Futures.addCallback(future, callback, this.mainThreadExecutor);
+	}
+
+	/**
+	 * Stop accepting tasks and wait for those already submitted to finish their database work.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+		try {
+			if (!this.executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+				logger.log(Level.WARNING, "Database tasks did not finish within {0} seconds.", SHUTDOWN_TIMEOUT);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Submit a task. If the task can not be accepted it fails on the main thread.
+	 *
+	 * @param task the task to run
+	 */
+	public <T> void submit(final DatabaseTask<T> task) {
+		try {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final T result = task.call();
+						mainThreadExecutor.execute(new Runnable() {
+							@Override
+							public void run() {
+								task.complete(result);
+							}
+						});
+					} catch (Exception e) {
+						logger.log(Level.WARNING, "Database task failed.", e);
+						fail(task, e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			logger.log(Level.WARNING, "Database task rejected, too many tasks are waiting.");
+			fail(task, e);
+		}
+	}
+
+	private void fail(final DatabaseTask<?> task, final Exception exception) {
+		this.mainThreadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				task.fail(exception);
+			}
+		});
+	}
+
+	private static final class IOThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "BanHammer database " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
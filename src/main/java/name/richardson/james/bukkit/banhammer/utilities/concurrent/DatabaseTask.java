@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * DatabaseTask.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+/**
+ * Work which is split between the database and the main server thread.
+ *
+ * @param <T> the result of the database work
+ */
+public interface DatabaseTask<T> {
+
+	/**
+	 * Do the database work. This is called on an I/O thread and must not use the Bukkit API.
+	 *
+	 * @return the result to pass to {@link #complete(Object)}
+	 * @throws Exception if the work could not be done
+	 */
+	T call()
+	throws Exception;
+
+	/**
+	 * Finish the task on the main server thread, where the Bukkit API may be used.
+	 *
+	 * @param result the result of the database work
+	 */
+	void complete(T result);
+
+	/**
+	 * Handle a failure on the main server thread.
+	 *
+	 * @param exception the reason the database work failed, or was not started
+	 */
+	void fail(Exception exception);
+
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * MainThreadExecutor.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import name.richardson.james.bukkit.utilities.logging.PluginLoggerFactory;
+
+/**
+ * Runs tasks on the main server thread within a time budget for each tick.
+ * <p/>
+ * This must be scheduled to run every tick. Each time it runs it takes tasks from its queue until the budget has
+ * been used up and leaves the rest for the next tick, so a burst of work can not cause a lag spike. At least one
+ * task is run every tick so the queue always makes progress.
+ */
+public class MainThreadExecutor implements Executor, Runnable {
+
+	private final long budget;
+	private final Logger logger = PluginLoggerFactory.getLogger(MainThreadExecutor.class);
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	/**
+	 * @param budget how long tasks may run for each tick, in nanoseconds
+	 */
+	public MainThreadExecutor(long budget) {
+		if (budget < 1) throw new IllegalArgumentException();
+		this.budget = budget;
+	}
+
+	/**
+	 * Run every queued task, ignoring the budget.
+	 * <p/>
+	 * This is intended to be called on the main thread when the plugin is disabled, once nothing else can queue
+	 * tasks, as the scheduler no longer runs this executor by then.
+	 *
+	 * @return the number of tasks run
+	 */
+	public int drain() {
+		int count = 0;
+		Runnable task;
+		while ((task = this.tasks.poll()) != null) {
+			this.run(task);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (task == null) throw new NullPointerException();
+		this.tasks.add(task);
+	}
+
+	public int getQueueSize() {
+		return this.tasks.size();
+	}
+
+	@Override
+	public void run() {
+		final long started = System.nanoTime();
+		Runnable task;
+		do {
+			task = this.tasks.poll();
+			if (task == null) return;
+			this.run(task);
+		} while (System.nanoTime() - started < this.budget);
+	}
+
+	private void run(Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Task failed on the main thread.", e);
+		}
+	}
+
+}
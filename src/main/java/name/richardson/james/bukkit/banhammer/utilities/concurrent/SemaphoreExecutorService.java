@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * SemaphoreExecutorService.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on another executor while limiting how many of them may run at the same time.
+ * <p/>
+ * Each task holds a permit while it runs. This allows tasks to be given a thread each, such as a virtual thread,
+ * without more of them using a database connection at once than the connection pool has. The number of tasks
+ * waiting for a permit is also limited, beyond which new tasks are rejected.
+ */
+public class SemaphoreExecutorService extends AbstractExecutorService {
+
+	private final Semaphore admissions;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+
+	/**
+	 * @param executor the executor which runs the tasks
+	 * @param permits the number of tasks which may run at the same time
+	 * @param queueSize the number of tasks which may wait for a permit
+	 */
+	public SemaphoreExecutorService(ExecutorService executor, int permits, int queueSize) {
+		if (executor == null || permits < 1 || queueSize < 0) throw new IllegalArgumentException();
+		this.executor = executor;
+		this.permits = new Semaphore(permits, true);
+		this.admissions = new Semaphore(permits + queueSize);
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+	throws InterruptedException {
+		return this.executor.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public void execute(final Runnable task) {
+		if (task == null) throw new NullPointerException();
+		if (!this.admissions.tryAcquire()) throw new RejectedExecutionException("Too many tasks are waiting for a permit.");
+		try {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					// the task is always run once admitted so the future it belongs to is completed
+					permits.acquireUninterruptibly();
+					try {
+						task.run();
+					} finally {
+						permits.release();
+						admissions.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.admissions.release();
+			throw e;
+		}
+	}
+
+	public int getAvailablePermits() {
+		return this.permits.availablePermits();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return this.executor.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return this.executor.isTerminated();
+	}
+
+	@Override
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return this.executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * SingleFlight.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces concurrent calls which share the same key.
+ * <p/>
+ * The first caller for a key performs the call while any other callers which arrive before it has finished wait
+ * for, and then share, its result. Once the call has completed the next caller for that key will perform a new
+ * call.
+ *
+ * @param <K> the type of key used to identify calls
+ * @param <V> the type of result returned by calls
+ */
+public final class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, FutureTask<V>> calls = new ConcurrentHashMap<K, FutureTask<V>>();
+
+	private static <V> V getUninterruptibly(Future<V> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Perform a call or wait for the result of a call with the same key which is already in progress.
+	 *
+	 * @param key the key identifying the call
+	 * @param callable the call to perform if none is in progress
+	 * @return the result of the call
+	 */
+	public V execute(K key, Callable<V> callable) {
+		final FutureTask<V> task = new FutureTask<V>(callable);
+		final FutureTask<V> existing = this.calls.putIfAbsent(key, task);
+		if (existing != null) return getUninterruptibly(existing);
+		try {
+			task.run();
+		} finally {
+			this.calls.remove(key, task);
+		}
+		return getUninterruptibly(task);
+	}
+
+	/**
+	 * @return the number of calls currently in progress
+	 */
+	public int size() {
+		return this.calls.size();
+	}
+
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 James Richardson.
+ *
+ * VirtualThreads.java is part of BanHammer.
+ *
+ * BanHammer is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * BanHammer is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * BanHammer. If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors which run each task on a new virtual thread.
+ * <p/>
+ * Virtual threads are only available on Java 21 and later runtimes, so they are found by reflection.
+ */
+public final class VirtualThreads {
+
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findExecutorFactory();
+
+	private VirtualThreads() {}
+
+	/**
+	 * @return true if the runtime supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * Create an executor which starts a new virtual thread for each task.
+	 *
+	 * @return the executor
+	 * @throws UnsupportedOperationException if the runtime does not support virtual threads
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) throw new UnsupportedOperationException("Virtual threads are not supported by this runtime.");
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(e);
+		} catch (InvocationTargetException e) {
+			throw new UnsupportedOperationException(e.getCause());
+		}
+	}
+
+	private static Method findExecutorFactory() {
+		try {
+			final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			// preview releases have the method but fail when it is called without preview features enabled
+			((ExecutorService) method.invoke(null)).shutdown();
+			return method;
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			return null;
+		} catch (InvocationTargetException e) {
+			return null;
+		}
+	}
+
+}
@@ -35,6 +35,10 @@ public enum BanHammer implements Localised, MessageFormatter {
 	ARGUMENT_BANCOUNT_NAME ("argument.bancount.name"),
 	ARGUMENT_BANCOUNT_DESC ("argument.bancount.desc"),
 
+	ARGUMENT_PAGE_ID ("argument.page.id"),
+	ARGUMENT_PAGE_NAME ("argument.page.name"),
+	ARGUMENT_PAGE_DESC ("argument.page.desc"),
+
 	ARGUMENT_SILENT_ID ("argument.silent.id"),
 	ARGUMENT_SILENT_NAME ("argument.silent.name"),
 	ARGUMENT_SILENT_DESC ("argument.silent.desc"),
@@ -98,6 +102,7 @@ public enum BanHammer implements Localised, MessageFormatter {
 
 	PLAYER_BANNED ("bancommand.player-banned"),
 	PLAYER_NOT_BANNED ("shared.player-is-not-banned"),
+	UNABLE_TO_COMPLETE_COMMAND ("shared.unable-to-complete-command"),
 	PLAYER_IS_ALREADY_BANNED ("bancommand.player-is-already-banned"),
 	PLUGIN_UNABLE_TO_HOOK_ALIAS ("alias.unable-to-hook-alias"),
 	EXPORT_SUMMARY ("exportcommand.summary"),
@@ -138,6 +143,7 @@ public enum BanHammer implements Localised, MessageFormatter {
 
 
 	RECENT_NO_BANS ("recentcommand.no-bans"),
+	PAGE_NO_MORE_BANS ("page.no-more-bans"),
 	UNDO_COMPLETE ("undocommand.complete"),
 
 	UNDO_COMMAND_NAME ("command.undo.name"),
@@ -148,6 +154,7 @@ public enum BanHammer implements Localised, MessageFormatter {
 	ALIAS_BAN_REASON ("alias.ban-reason"),
 	LISTENER_PLAYER_BANNED_TEMPORARILY ("listener.player-banned-temporarily"),
 	LISTENER_PLAYER_BANNED_PERMANENTLY ("listener.player-banned-permanently"),
+	LISTENER_UNABLE_TO_CHECK_PLAYER ("listener.unable-to-check-player"),
 	NOTIFY_PLAYER_BANNED ("notifier.player-banned"),
 	NOTIFY_PLAYER_PARDONED ("notifier.player-pardoned");
 
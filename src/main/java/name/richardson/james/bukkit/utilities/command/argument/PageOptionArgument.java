@@ -0,0 +1,13 @@
+package name.richardson.james.bukkit.utilities.command.argument;
+
+import static name.richardson.james.bukkit.banhammer.utilities.localisation.BanHammer.*;
+
+public class PageOptionArgument {
+
+	public static IntegerMarshaller getInstance(final int defaultValue) {
+		ArgumentMetadata metadata = new SimpleArgumentMetadata(ARGUMENT_PAGE_ID, ARGUMENT_PAGE_NAME, ARGUMENT_PAGE_DESC);
+		final OptionArgument argument = new OptionArgument(metadata, null);
+		return new IntegerMarshaller(argument, defaultValue);
+	}
+
+}
@@ -0,0 +1,66 @@
+package name.richardson.james.bukkit.banhammer;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
+
+import static org.mockito.Mockito.*;
+
+public class BanExpiryTaskTest extends TestCase {
+
+	private ActiveBanIndex activeBanIndex;
+	private BanRecordManager banRecordManager;
+	private BukkitScheduler scheduler;
+	private BanExpiryTask task;
+
+	@Test
+	public void testExpiredBansAreSaved()
+	throws Exception {
+		task.run();
+		verify(banRecordManager).expire(anyCollectionOf(BanRecord.class));
+		verify(scheduler).runTask(any(Plugin.class), any(Runnable.class));
+		Assert.assertEquals("Saved bans should leave the queue.", 0, activeBanIndex.getBanExpiryQueue().size());
+	}
+
+	@Test
+	public void testFailedSaveIsRetried()
+	throws Exception {
+		doThrow(new RuntimeException()).when(banRecordManager).expire(anyCollectionOf(BanRecord.class));
+		task.run();
+		verify(scheduler, never()).runTask(any(Plugin.class), any(Runnable.class));
+		Assert.assertEquals("Bans which were not saved should be put back in the queue.", 1, activeBanIndex.getBanExpiryQueue().size());
+		final List<BanRecord> records = activeBanIndex.expire(BanExpiryTask.BATCH_SIZE);
+		Assert.assertEquals("Ban should be expired again.", 1, records.size());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		activeBanIndex = new ActiveBanIndex();
+		banRecordManager = mock(BanRecordManager.class);
+		scheduler = mock(BukkitScheduler.class);
+		task = new BanExpiryTask(mock(Plugin.class), scheduler, mock(PluginManager.class), activeBanIndex, banRecordManager);
+		final PlayerRecord player = new PlayerRecord();
+		player.setName("frank");
+		final BanRecord record = new BanRecord();
+		record.setId(1);
+		record.setPlayer(player);
+		record.setState(BanRecord.State.NORMAL);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() - 10000));
+		activeBanIndex.getBanExpiryQueue().schedule(record);
+	}
+
+}
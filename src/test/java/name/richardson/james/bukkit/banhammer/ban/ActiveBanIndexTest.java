@@ -0,0 +1,157 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class ActiveBanIndexTest extends TestCase {
+
+	private ActiveBanIndex index;
+
+	@Test
+	public void testGetIsCaseInsensitive()
+	throws Exception {
+		index.put(getBanRecord("Frank", 1));
+		Assert.assertNotNull("Ban should be found regardless of case.", index.get("fRANK"));
+	}
+
+	@Test
+	public void testExpiredBanIsNotReturned()
+	throws Exception {
+		BanRecord record = getBanRecord("frank", 1);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() + 10000));
+		index.put(record);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() - 10000));
+		Assert.assertNull("Expired ban should not be returned.", index.get("frank"));
+		Assert.assertEquals("Expired ban should be removed from the index.", 0, index.size());
+	}
+
+	@Test
+	public void testGetActiveBans()
+	throws Exception {
+		BanRecord frank = getBanRecord("frank", 1);
+		BanRecord joe = getBanRecord("joe", 2);
+		index.put(frank);
+		index.put(joe);
+		Assert.assertEquals("Only the banned players should be returned in order.", Arrays.asList(joe, frank), index.getActiveBans(Arrays.asList("Joe", "bob", "Frank")));
+	}
+
+	@Test
+	public void testExpire()
+	throws Exception {
+		BanRecord record = getBanRecord("frank", 1);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() + 10000));
+		index.put(record);
+		index.put(record);
+		Assert.assertTrue("Ban should not have expired yet.", index.expire(10).isEmpty());
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() - 10000));
+		index.getBanExpiryQueue().cancel(record);
+		index.getBanExpiryQueue().schedule(record);
+		Assert.assertEquals("Expired ban should be returned once.", Arrays.asList(record), index.expire(10));
+		Assert.assertEquals("Expired ban should be removed from the index.", 0, index.size());
+	}
+
+	@Test
+	public void testPutAddsExpiredBanToFilter()
+	throws Exception {
+		index.getBannedPlayerFilter().rebuild(new PlayerRecordManager(new MemoryBanStore(), MoreExecutors.sameThreadExecutor()));
+		Assert.assertFalse("Player who has never been banned should not be matched.", index.mightHaveBans("frank"));
+		BanRecord record = getBanRecord("frank", 1);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() - 10000));
+		index.put(record);
+		Assert.assertFalse("Expired ban should not be indexed.", index.contains("frank"));
+		Assert.assertTrue("Player with an expired ban should be matched.", index.mightHaveBans("Frank"));
+	}
+
+	@Test
+	public void testRebuildSchedulesExpiredBans()
+	throws Exception {
+		BanRecord record = getBanRecord("frank", 1);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() - 10000));
+		index.rebuild(Arrays.asList(record));
+		Assert.assertFalse("Expired ban should not be indexed.", index.contains("frank"));
+		Assert.assertEquals("Expired ban should be returned.", Arrays.asList(record), index.expire(10));
+	}
+
+	@Test
+	public void testRemoveCancelsExpiry()
+	throws Exception {
+		BanRecord record = getBanRecord("frank", 1);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() + 10000));
+		index.put(record);
+		index.remove(record);
+		Assert.assertEquals("Removed ban should not be waiting to expire.", 0, index.getBanExpiryQueue().size());
+	}
+
+	@Test
+	public void testRemoveOnlyRemovesIndexedBan()
+	throws Exception {
+		index.put(getBanRecord("frank", 2));
+		index.remove(getBanRecord("frank", 1));
+		Assert.assertTrue("A different ban should not remove the indexed ban.", index.contains("frank"));
+		index.remove(getBanRecord("frank", 2));
+		Assert.assertFalse("Ban should have been removed.", index.contains("frank"));
+	}
+
+	@Test
+	public void testRemoveUnsavedBan()
+	throws Exception {
+		BanRecord frank = getBanRecord("frank", 0);
+		frank.setExpiresAt(new Timestamp(System.currentTimeMillis() + 10000));
+		BanRecord joe = getBanRecord("joe", 0);
+		joe.setExpiresAt(new Timestamp(System.currentTimeMillis() + 10000));
+		index.put(frank);
+		index.put(joe);
+		index.remove(frank);
+		Assert.assertFalse("Unsaved ban should have been removed.", index.contains("frank"));
+		Assert.assertEquals("Only the removed ban should stop waiting to expire.", 1, index.getBanExpiryQueue().size());
+		index.remove(getBanRecord("joe", 0));
+		Assert.assertTrue("A different unsaved ban should not remove the indexed ban.", index.contains("joe"));
+	}
+
+	@Test
+	public void testReplacingUnsavedBanSchedulesExpiry()
+	throws Exception {
+		BanRecord first = getBanRecord("frank", 0);
+		first.setExpiresAt(new Timestamp(System.currentTimeMillis() + 10000));
+		BanRecord second = getBanRecord("frank", 0);
+		second.setExpiresAt(new Timestamp(System.currentTimeMillis() + 20000));
+		index.put(first);
+		index.put(second);
+		Assert.assertEquals("Both unsaved bans should be waiting to expire.", 2, index.getBanExpiryQueue().size());
+	}
+
+	@Test
+	public void testRebuild()
+	throws Exception {
+		index.put(getBanRecord("joe", 3));
+		BanRecord pardoned = getBanRecord("bob", 2);
+		pardoned.setState(BanRecord.State.PARDONED);
+		index.rebuild(Arrays.asList(getBanRecord("frank", 1), pardoned));
+		Assert.assertEquals("Index should only contain the active ban.", 1, index.size());
+		Assert.assertTrue("Index should contain the rebuilt ban.", index.contains("frank"));
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		index = new ActiveBanIndex();
+	}
+
+	private BanRecord getBanRecord(String playerName, int id) {
+		PlayerRecord playerRecord = new PlayerRecord();
+		playerRecord.setName(playerName);
+		BanRecord record = new BanRecord();
+		record.setId(id);
+		record.setPlayer(playerRecord);
+		record.setState(BanRecord.State.NORMAL);
+		return record;
+	}
+
+}
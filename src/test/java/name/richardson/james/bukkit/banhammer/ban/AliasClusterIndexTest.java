@@ -0,0 +1,83 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AliasClusterIndexTest extends TestCase {
+
+	private ActiveBanIndex activeBanIndex;
+	private AliasClusterIndex clusters;
+
+	@Test
+	public void testTransitiveAliasesAreFound()
+	throws Exception {
+		clusters.associate("frank", Arrays.asList("joe"));
+		clusters.associate("Joe", Arrays.asList("bob"));
+		activeBanIndex.put(getBanRecord("bob", 1));
+		Assert.assertTrue("Frank should have a banned alias.", clusters.hasBannedAlias("frank"));
+		Assert.assertEquals("Bob should be the banned alias.", Arrays.asList("bob"), clusters.getBannedAliases("FRANK"));
+		Assert.assertFalse("Bob should not be his own alias.", clusters.hasBannedAlias("bob"));
+	}
+
+	@Test
+	public void testBannedFlagFollowsIndex()
+	throws Exception {
+		BanRecord record = getBanRecord("bob", 1);
+		activeBanIndex.put(record);
+		clusters.associate("frank", Arrays.asList("bob"));
+		Assert.assertTrue("Existing ban should be counted.", clusters.hasBannedAlias("frank"));
+		activeBanIndex.remove(record);
+		Assert.assertFalse("Removed ban should no longer be counted.", clusters.hasBannedAlias("frank"));
+	}
+
+	@Test
+	public void testRemove()
+	throws Exception {
+		clusters.associate("frank", Arrays.asList("bob"));
+		activeBanIndex.put(getBanRecord("bob", 1));
+		clusters.remove("frank");
+		Assert.assertFalse("Removed player should not have any aliases.", clusters.hasBannedAlias("frank"));
+		clusters.remove("bob");
+		clusters.associate("joe", Arrays.asList("frank"));
+		Assert.assertTrue("Removed members should not be reported.", clusters.getBannedAliases("joe").isEmpty());
+	}
+
+	@Test
+	public void testContainsPlayerWithoutAliases()
+	throws Exception {
+		clusters.associate("frank", Collections.<String>emptyList());
+		Assert.assertTrue("Player without aliases should be indexed.", clusters.contains("Frank"));
+		Assert.assertFalse("Unknown player should not be indexed.", clusters.contains("joe"));
+	}
+
+	@Test
+	public void testRebuild()
+	throws Exception {
+		clusters.associate("frank", Arrays.asList("bob"));
+		clusters.rebuild(Collections.singletonMap("joe", Arrays.asList("bob")));
+		Assert.assertEquals("Only the rebuilt players should be indexed.", 2, clusters.size());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		activeBanIndex = new ActiveBanIndex();
+		clusters = new AliasClusterIndex(activeBanIndex);
+	}
+
+	private BanRecord getBanRecord(String playerName, int id) {
+		PlayerRecord playerRecord = new PlayerRecord();
+		playerRecord.setName(playerName);
+		BanRecord record = new BanRecord();
+		record.setId(id);
+		record.setPlayer(playerRecord);
+		record.setState(BanRecord.State.NORMAL);
+		return record;
+	}
+
+}
@@ -0,0 +1,73 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BanPagerTest extends TestCase {
+
+	private List<BanCursor> cursors;
+	private BanPager pager;
+	private BanPager.Query query;
+
+	@Test
+	public void testGetFirstPage()
+	throws Exception {
+		List<BanRecord> bans = pager.getPage("frank:recent", 1, 5, query);
+		Assert.assertEquals(5, bans.size());
+		Assert.assertEquals("First page should start with the newest ban.", 12, bans.get(0).getId());
+		Assert.assertNull("First page should not seek.", cursors.get(0));
+	}
+
+	@Test
+	public void testGetNextPageSeeksFromCursor()
+	throws Exception {
+		pager.getPage("frank:recent", 1, 5, query);
+		List<BanRecord> bans = pager.getPage("frank:recent", 2, 5, query);
+		Assert.assertEquals(7, bans.get(0).getId());
+		Assert.assertEquals("Second page should be a single query.", 2, cursors.size());
+		Assert.assertEquals("Second page should seek past the last ban of the first.", 8, cursors.get(1).getId());
+	}
+
+	@Test
+	public void testGetUnseenPageWalksForward()
+	throws Exception {
+		List<BanRecord> bans = pager.getPage("frank:recent", 3, 5, query);
+		Assert.assertEquals(2, bans.size());
+		Assert.assertEquals(3, cursors.size());
+	}
+
+	@Test
+	public void testGetPagePastEnd()
+	throws Exception {
+		Assert.assertTrue(pager.getPage("frank:recent", 4, 5, query).isEmpty());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		pager = new BanPager();
+		cursors = new ArrayList<BanCursor>();
+		query = new BanPager.Query() {
+			@Override
+			public List<BanRecord> list(int limit, BanCursor after) {
+				cursors.add(after);
+				List<BanRecord> bans = new ArrayList<BanRecord>();
+				int start = (after == null) ? 12 : after.getId() - 1;
+				for (int id = start; id > 0 && bans.size() < limit; id--) {
+					BanRecord ban = new BanRecord();
+					ban.setId(id);
+					ban.setCreatedAt(new Timestamp(id * 1000L));
+					bans.add(ban);
+				}
+				return bans;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,94 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.Collections;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.SqlUpdate;
+import com.avaje.ebean.Transaction;
+import com.avaje.ebean.TxRunnable;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import name.richardson.james.bukkit.banhammer.persistence.DatabaseWriter;
+
+import static org.mockito.Mockito.*;
+
+public class BanStatisticsManagerTest extends TestCase {
+
+	private static final String INSERT = "INSERT INTO banhammer_statistics (creator_id, ban_type, ban_state, bans) VALUES (:creator, :type, :state, :bans)";
+	private static final String UPDATE = "UPDATE banhammer_statistics SET bans = bans + :delta WHERE creator_id = :creator AND ban_type = :type AND ban_state = :state";
+
+	private Connection connection;
+	private EbeanServer database;
+	private SqlUpdate insert;
+	private BanStatisticsManager manager;
+	private SqlUpdate update;
+
+	@Test
+	public void testConcurrentlyCreatedCountIsUpdated()
+	throws Exception {
+		// the count is missing, then another transaction creates it before this one can
+		when(update.execute()).thenReturn(0, 1);
+		when(insert.execute()).thenThrow(new PersistenceException("duplicate key"));
+		final Savepoint savepoint = mock(Savepoint.class);
+		when(connection.setSavepoint()).thenReturn(savepoint);
+		manager.changes().add(getBanRecord()).run();
+		verify(connection).rollback(savepoint);
+		verify(update, times(3)).execute();
+	}
+
+	@Test
+	public void testMissingCountIsInserted()
+	throws Exception {
+		when(update.execute()).thenReturn(0);
+		manager.changes().add(getBanRecord()).run();
+		verify(insert, times(2)).execute();
+	}
+
+	@Test
+	public void testRepairCountsInsideTransaction()
+	throws Exception {
+		final SqlQuery query = mock(SqlQuery.class);
+		when(database.createSqlQuery(anyString())).thenReturn(query);
+		when(query.findList()).thenReturn(Collections.<SqlRow>emptyList());
+		final DatabaseWriter writer = mock(DatabaseWriter.class);
+		manager = new BanStatisticsManager(database, writer);
+		Assert.assertEquals("Nothing should be counted.", 0, manager.repair());
+		verify(database, never()).createSqlQuery(anyString());
+		verify(writer).execute(any(TxRunnable.class));
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		database = mock(EbeanServer.class);
+		final Transaction transaction = mock(Transaction.class);
+		connection = mock(Connection.class);
+		when(database.currentTransaction()).thenReturn(transaction);
+		when(transaction.getConnection()).thenReturn(connection);
+		insert = mock(SqlUpdate.class);
+		when(database.createSqlUpdate(INSERT)).thenReturn(insert);
+		when(insert.setParameter(anyString(), any())).thenReturn(insert);
+		update = mock(SqlUpdate.class);
+		when(database.createSqlUpdate(UPDATE)).thenReturn(update);
+		when(update.setParameter(anyString(), any())).thenReturn(update);
+		manager = new BanStatisticsManager(database, mock(DatabaseWriter.class));
+	}
+
+	private BanRecord getBanRecord() {
+		final PlayerRecord creator = new PlayerRecord();
+		creator.setId(7);
+		final BanRecord record = new BanRecord();
+		record.setCreator(creator);
+		record.setState(BanRecord.State.NORMAL);
+		return record;
+	}
+
+}
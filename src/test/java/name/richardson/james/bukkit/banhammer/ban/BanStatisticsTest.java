@@ -0,0 +1,41 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BanStatisticsTest extends TestCase {
+
+	private BanStatistics statistics;
+
+	@Test
+	public void testAdd()
+	throws Exception {
+		statistics.add(BanRecord.Type.PERMANENT, BanRecord.State.NORMAL, 3);
+		statistics.add(BanRecord.Type.TEMPORARY, BanRecord.State.EXPIRED, 2);
+		statistics.add(BanRecord.Type.TEMPORARY, BanRecord.State.PARDONED, 1);
+		Assert.assertEquals(3, statistics.getPermanentCount());
+		Assert.assertEquals(3, statistics.getTemporaryCount());
+		Assert.assertEquals(3, statistics.getNormalCount());
+		Assert.assertEquals(2, statistics.getExpiredCount());
+		Assert.assertEquals(1, statistics.getPardonedCount());
+		Assert.assertEquals(6, statistics.getTotalCount());
+		Assert.assertEquals(2, statistics.getCount(BanRecord.Type.TEMPORARY, BanRecord.State.EXPIRED));
+		Assert.assertEquals(0, statistics.getCount(BanRecord.Type.PERMANENT, BanRecord.State.EXPIRED));
+	}
+
+	@Test
+	public void testToState()
+	throws Exception {
+		Assert.assertEquals("States stored as ordinals should be converted.", BanRecord.State.PARDONED, BanStatisticsManager.toState(2));
+		Assert.assertEquals("States stored as names should be converted.", BanRecord.State.EXPIRED, BanStatisticsManager.toState("EXPIRED"));
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		statistics = new BanStatistics();
+	}
+
+}
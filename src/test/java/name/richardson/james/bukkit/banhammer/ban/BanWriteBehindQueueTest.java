@@ -0,0 +1,67 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class BanWriteBehindQueueTest extends TestCase {
+
+	private ActiveBanIndex activeBanIndex;
+	private BanRecordManager banRecordManager;
+	private PlayerRecordManager playerRecordManager;
+	private BanWriteBehindQueue queue;
+
+	@Test
+	public void testFlushResolvesPlayers()
+	throws Exception {
+		BanRecord record = BanWriteBehindQueue.createBan("frank", "AliasPlugin");
+		Assert.assertTrue("Ban should be queued.", queue.offer(record));
+		queue.flush();
+		verify(playerRecordManager, times(1)).create("frank");
+		verify(playerRecordManager, times(1)).create("AliasPlugin");
+		verify(banRecordManager, times(1)).save(anyCollectionOf(BanRecord.class));
+		Assert.assertEquals("Queue should be empty.", 0, queue.size());
+	}
+
+	@Test
+	public void testFailedBatchIsRetried()
+	throws Exception {
+		when(banRecordManager.save(anyCollectionOf(BanRecord.class))).thenThrow(new RuntimeException());
+		BanRecord record = BanWriteBehindQueue.createBan("frank", "AliasPlugin");
+		activeBanIndex.put(record);
+		queue.offer(record);
+		queue.flush();
+		Assert.assertEquals("Ban should be back in the queue.", 1, queue.size());
+		Assert.assertTrue("Ban should stay indexed while it is retried.", activeBanIndex.contains("frank"));
+		queue.drain();
+		Assert.assertEquals("Ban should be abandoned after too many attempts.", 0, queue.size());
+		Assert.assertFalse("Abandoned ban should be removed from the index.", activeBanIndex.contains("frank"));
+		verify(banRecordManager, times(BanWriteBehindQueue.MAXIMUM_ATTEMPTS)).save(anyCollectionOf(BanRecord.class));
+	}
+
+	@Test
+	public void testOfferWhenFull()
+	throws Exception {
+		queue = new BanWriteBehindQueue(playerRecordManager, banRecordManager, activeBanIndex, 1);
+		queue.offer(BanWriteBehindQueue.createBan("frank", "AliasPlugin"));
+		Assert.assertFalse("Full queue should refuse bans.", queue.offer(BanWriteBehindQueue.createBan("joe", "AliasPlugin")));
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		banRecordManager = mock(BanRecordManager.class);
+		playerRecordManager = mock(PlayerRecordManager.class);
+		PlayerRecord player = mock(PlayerRecord.class);
+		when(player.getName()).thenReturn("frank");
+		when(playerRecordManager.create(anyString())).thenReturn(player);
+		activeBanIndex = new ActiveBanIndex();
+		queue = new BanWriteBehindQueue(playerRecordManager, banRecordManager, activeBanIndex);
+	}
+
+}
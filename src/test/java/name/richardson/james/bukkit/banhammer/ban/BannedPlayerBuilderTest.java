@@ -3,7 +3,7 @@ package name.richardson.james.bukkit.banhammer.ban;
 import java.sql.Timestamp;
 import java.util.Arrays;
 
-import com.avaje.ebean.EbeanServer;
+import com.google.common.util.concurrent.MoreExecutors;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 import org.junit.Before;
@@ -11,15 +11,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
-import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @RunWith(JUnit4.class)
 public class BannedPlayerBuilderTest extends TestCase {
 
 	private PlayerRecordManager.BannedPlayerBuilder builder;
-	private EbeanServer database;
 	private PlayerRecordManager manager;
+	private BanStore store;
 
 	@Test
 	public void testSetCreator() throws Exception {
@@ -41,12 +41,14 @@ public class BannedPlayerBuilderTest extends TestCase {
 
 	@Test
 	public void testSave() {
-		when(manager.getDatabase()).thenReturn(database);
+		when(manager.getExecutor()).thenReturn(MoreExecutors.sameThreadExecutor());
+		when(manager.getStore()).thenReturn(store);
 		PlayerRecord playerRecord = mock(PlayerRecord.class);
 		when(manager.create("frank")).thenReturn(playerRecord);
 		builder.setPlayer("frank");
+		builder.setCreator(playerRecord);
 		builder.save();
-		verify(database).save(anyObject());
+		verify(store).insertBans(anyCollection());
 	}
 
 	@Test
@@ -70,7 +72,7 @@ public class BannedPlayerBuilderTest extends TestCase {
 
 	@Before
 	public void setUp() {
-		database = mock(EbeanServer.class);
+		store = mock(BanStore.class);
 		manager = mock(PlayerRecordManager.class);
 		when(manager.getBannedPlayerBuilder()).thenCallRealMethod();
 		builder = manager.getBannedPlayerBuilder();
@@ -0,0 +1,63 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class BannedPlayerFilterTest extends TestCase {
+
+	private BannedPlayerFilter filter;
+	private PlayerRecordManager manager;
+
+	@Test
+	public void testMightContainBeforeRebuild()
+	throws Exception {
+		Assert.assertTrue("Filter should match every player until it has been built.", filter.mightContain("frank"));
+		Assert.assertEquals("False positive rate should be 1 until the filter has been built.", 1.0, filter.getFalsePositiveRate(), 0);
+	}
+
+	@Test
+	public void testRebuild()
+	throws Exception {
+		when(manager.listBannedNames()).thenReturn(Arrays.asList("Frank"));
+		filter.rebuild(manager);
+		Assert.assertTrue("Banned player should be matched regardless of case.", filter.mightContain("fRANK"));
+		Assert.assertFalse("Player who has never been banned should not be matched.", filter.mightContain("joe"));
+	}
+
+	@Test
+	public void testPut()
+	throws Exception {
+		when(manager.listBannedNames()).thenReturn(new ArrayList<String>());
+		filter.rebuild(manager);
+		filter.put("joe");
+		Assert.assertTrue("Player should be matched after being added.", filter.mightContain("joe"));
+	}
+
+	@Test
+	public void testFalsePositiveRate()
+	throws Exception {
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < 1024; i++) names.add("player" + i);
+		when(manager.count()).thenReturn(names.size());
+		when(manager.listBannedNames()).thenReturn(names);
+		filter.rebuild(manager);
+		for (String name : names) Assert.assertTrue("Filter must not return false negatives.", filter.mightContain(name));
+		Assert.assertTrue("False positive rate should be close to the configured probability.", filter.getFalsePositiveRate() < 0.02);
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		filter = new BannedPlayerFilter();
+		manager = mock(PlayerRecordManager.class);
+	}
+
+}
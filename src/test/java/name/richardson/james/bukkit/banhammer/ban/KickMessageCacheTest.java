@@ -0,0 +1,63 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.sql.Timestamp;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KickMessageCacheTest extends TestCase {
+
+	private KickMessageCache cache;
+
+	@Test
+	public void testPermanentMessageIsCached()
+	throws Exception {
+		BanRecord record = getBanRecord(1);
+		String message = cache.getKickMessage(record);
+		Assert.assertTrue("Message should contain the reason.", message.contains("Griefing"));
+		Assert.assertSame("Cached message should be reused.", message, cache.getKickMessage(record));
+		Assert.assertEquals("Message should have been cached.", 1, cache.size());
+	}
+
+	@Test
+	public void testTemporaryMessageContainsTime()
+	throws Exception {
+		BanRecord record = getBanRecord(1);
+		record.setExpiresAt(new Timestamp(System.currentTimeMillis() + 3600000));
+		String message = cache.getKickMessage(record);
+		Assert.assertFalse("Placeholder should be replaced.", message.contains("\u0000"));
+		Assert.assertTrue("Message should contain the reason.", message.contains("Griefing"));
+	}
+
+	@Test
+	public void testInvalidate()
+	throws Exception {
+		BanRecord record = getBanRecord(1);
+		cache.getKickMessage(record);
+		cache.invalidate(record);
+		Assert.assertEquals("Message should have been removed.", 0, cache.size());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		cache = new KickMessageCache();
+	}
+
+	private BanRecord getBanRecord(int id) {
+		PlayerRecord playerRecord = new PlayerRecord();
+		playerRecord.setName("frank");
+		PlayerRecord creator = new PlayerRecord();
+		creator.setName("grandwazir");
+		BanRecord record = new BanRecord();
+		record.setId(id);
+		record.setPlayer(playerRecord);
+		record.setCreator(creator);
+		record.setReason("Griefing");
+		record.setState(BanRecord.State.NORMAL);
+		return record;
+	}
+
+}
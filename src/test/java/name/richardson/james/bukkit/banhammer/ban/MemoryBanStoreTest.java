@@ -0,0 +1,224 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import javax.persistence.PersistenceException;
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.avaje.ebean.QueryResultVisitor;
+import com.google.common.util.concurrent.MoreExecutors;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoryBanStoreTest extends TestCase {
+
+	private PlayerRecord creator;
+	private MemoryBanStore store;
+
+	@Test
+	public void testSavePlayersAssignsIds()
+	throws Exception {
+		PlayerRecord player = createPlayer("Frank");
+		Assert.assertTrue("Stored players should be given an id.", player.getId() > 0);
+		Assert.assertSame("Stored players should be found by normalised name.", player, store.findPlayer("frank"));
+		Assert.assertEquals(2, store.countPlayers());
+	}
+
+	@Test
+	public void testSavePlayersRejectsDuplicateNames()
+	throws Exception {
+		createPlayer("frank");
+		PlayerRecord first = new PlayerRecord();
+		first.setName("bob");
+		PlayerRecord duplicate = new PlayerRecord();
+		duplicate.setName("Frank");
+		try {
+			store.savePlayers(Arrays.asList(first, duplicate));
+			Assert.fail("A second player with the same normalised name should not be saved.");
+		} catch (PersistenceException e) {
+			Assert.assertNull("A failed save should not store any players.", store.findPlayer("bob"));
+		}
+	}
+
+	@Test
+	public void testInsertBansLinksPlayers()
+	throws Exception {
+		PlayerRecord player = createPlayer("frank");
+		BanRecord ban = createBan(player, 1000);
+		Assert.assertTrue("Inserted bans should be given an id.", ban.getId() > 0);
+		Assert.assertTrue("The player should be banned once the ban is inserted.", store.findPlayer("frank").isBanned());
+		Assert.assertEquals("The ban should be listed against its creator.", 1, creator.getCreatedBans().size());
+	}
+
+	@Test
+	public void testInsertBansStoresNewPlayers()
+	throws Exception {
+		PlayerRecord player = new PlayerRecord();
+		player.setName("frank");
+		createBan(player, 1000);
+		Assert.assertSame("Players of inserted bans should be stored as well.", player, store.findPlayer("frank"));
+	}
+
+	@Test
+	public void testListBansSeeksFromCursor()
+	throws Exception {
+		PlayerRecord player = createPlayer("frank");
+		for (int i = 1; i <= 5; i++) {
+			createBan(player, i * 1000);
+		}
+		List<BanRecord> bans = store.listBans(null, 2, null);
+		Assert.assertEquals("Bans should be listed newest first.", 5000, bans.get(0).getCreatedAt().getTime());
+		bans = store.listBans(null, 2, BanCursor.after(bans.get(1)));
+		Assert.assertEquals(2, bans.size());
+		Assert.assertEquals("Listing should continue after the cursor.", 3000, bans.get(0).getCreatedAt().getTime());
+		bans = store.listBans(player, 10, BanCursor.after(bans.get(1)));
+		Assert.assertEquals("Listing the bans of a player should continue after the cursor.", 1, bans.size());
+	}
+
+	@Test
+	public void testListPlayerNamesMatchesPrefixAndStatus()
+	throws Exception {
+		createBan(createPlayer("frank"), 1000);
+		createPlayer("fred");
+		createPlayer("bob");
+		Assert.assertEquals(Arrays.asList("frank", "fred"), store.listPlayerNames("fr", PlayerRecordManager.PlayerStatus.ANY, 10));
+		Assert.assertEquals(Arrays.asList("frank"), store.listPlayerNames("fr", PlayerRecordManager.PlayerStatus.BANNED, 10));
+		Assert.assertEquals(Arrays.asList("frank"), store.listPlayerNames("f", PlayerRecordManager.PlayerStatus.ANY, 1));
+		Assert.assertEquals(Arrays.asList("creator"), store.listPlayerNames("", PlayerRecordManager.PlayerStatus.CREATOR, 10));
+	}
+
+	@Test
+	public void testChangeBanStatesChangesStatistics()
+	throws Exception {
+		BanRecord ban = createBan(createPlayer("frank"), 1000);
+		createBan(createPlayer("bob"), 2000);
+		store.changeBanStates(Arrays.asList(ban), BanRecord.State.PARDONED);
+		BanStatistics statistics = store.getStatistics(null);
+		Assert.assertEquals(1, statistics.getPardonedCount());
+		Assert.assertEquals(1, statistics.getNormalCount());
+		Assert.assertEquals(2, store.getStatistics(creator).getTotalCount());
+		Assert.assertFalse("A pardoned player should not be banned.", store.findPlayer("frank").isBanned());
+	}
+
+	@Test
+	public void testDeletePlayersDeletesTheirBans()
+	throws Exception {
+		PlayerRecord player = createPlayer("frank");
+		createBan(player, 1000);
+		store.deletePlayers(Arrays.asList(player));
+		Assert.assertNull(store.findPlayer("frank"));
+		Assert.assertEquals("Bans of a deleted player should be deleted.", 0, store.countBans());
+		Assert.assertTrue("Deleted bans should be removed from their creator.", creator.getCreatedBans().isEmpty());
+	}
+
+	@Test
+	public void testVisitBansStops()
+	throws Exception {
+		PlayerRecord player = createPlayer("frank");
+		createBan(player, 1000);
+		createBan(player, 2000);
+		Assert.assertEquals("Every ban should be visited.", 2, visitBans(store, Integer.MAX_VALUE).size());
+		Assert.assertEquals("Visiting should stop when the visitor returns false.", 1, visitBans(store, 1).size());
+	}
+
+	@Test
+	public void testSnapshotRoundTrip()
+	throws Exception {
+		BanRecord ban = createBan(createPlayer("frank"), 1000);
+		ban.setExpiresAt(new Timestamp(5000));
+		File file = File.createTempFile("bans", ".yml");
+		try {
+			store.save(file);
+			MemoryBanStore loaded = new MemoryBanStore();
+			loaded.load(file);
+			Assert.assertEquals(2, loaded.countPlayers());
+			BanRecord record = visitBans(loaded, 1).get(0);
+			Assert.assertEquals(ban.getId(), record.getId());
+			Assert.assertEquals("frank", record.getPlayer().getName());
+			Assert.assertEquals("creator", record.getCreator().getName());
+			Assert.assertEquals(ban.getReason(), record.getReason());
+			Assert.assertEquals(ban.getExpiresAt(), record.getExpiresAt());
+			Assert.assertSame("Loaded bans should be linked to their players.", record, loaded.findPlayer("frank").getBans().get(0));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testManagerDoesNotBanPlayerTwice()
+	throws Exception {
+		BanRecordManager manager = new BanRecordManager(store, MoreExecutors.sameThreadExecutor());
+		PlayerRecord player = createPlayer("frank");
+		Assert.assertTrue(manager.save(newBan(player, 1000)));
+		Assert.assertFalse("A banned player should not be banned again.", manager.save(newBan(store.findPlayer("frank"), 2000)));
+		Assert.assertEquals(1, manager.count());
+	}
+
+	@Test
+	public void testFindActiveBans()
+	throws Exception {
+		BanRecord frank = createBan(createPlayer("frank"), 1000);
+		BanRecord joe = newBan(createPlayer("joe"), 1000);
+		joe.setExpiresAt(new Timestamp(2000));
+		store.insertBans(Arrays.asList(joe));
+		createPlayer("bob");
+		Assert.assertEquals("Only active bans should be found.", Arrays.asList(frank), store.findActiveBans(Arrays.asList("frank", "joe", "bob", "nobody")));
+	}
+
+	@Test
+	public void testManagerSavesUnbannedPlayersTogether()
+	throws Exception {
+		BanRecordManager manager = new BanRecordManager(store, MoreExecutors.sameThreadExecutor());
+		PlayerRecord frank = createPlayer("frank");
+		createBan(frank, 1000);
+		BanRecord joe = newBan(createPlayer("joe"), 2000);
+		Assert.assertEquals("Only the ban of the player who was not banned should be saved.", Arrays.asList(joe), manager.save(Arrays.asList(newBan(frank, 2000), joe)));
+		Assert.assertEquals(2, manager.count());
+	}
+
+	@Before
+	public void setUp() {
+		store = new MemoryBanStore();
+		creator = createPlayer("creator");
+	}
+
+	private static List<BanRecord> visitBans(BanStore store, final int limit) {
+		final List<BanRecord> bans = new ArrayList<BanRecord>();
+		store.visitBans(new QueryResultVisitor<BanRecord>() {
+			@Override
+			public boolean accept(BanRecord ban) {
+				bans.add(ban);
+				return bans.size() < limit;
+			}
+		});
+		return bans;
+	}
+
+	private BanRecord createBan(PlayerRecord player, long createdAt) {
+		BanRecord ban = newBan(player, createdAt);
+		store.insertBans(Arrays.asList(ban));
+		return ban;
+	}
+
+	private PlayerRecord createPlayer(String name) {
+		PlayerRecord player = new PlayerRecord();
+		player.setName(name);
+		store.savePlayers(Arrays.asList(player));
+		return player;
+	}
+
+	private BanRecord newBan(PlayerRecord player, long createdAt) {
+		BanRecord ban = new BanRecord();
+		ban.setPlayer(player);
+		ban.setCreator(creator);
+		ban.setCreatedAt(new Timestamp(createdAt));
+		ban.setReason("Testing");
+		ban.setState(BanRecord.State.NORMAL);
+		return ban;
+	}
+
+}
@@ -0,0 +1,56 @@
+package name.richardson.james.bukkit.banhammer.ban;
+
+import java.util.Arrays;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlayerRecordManagerTest extends TestCase {
+
+	private PlayerRecordManager manager;
+	private MemoryBanStore store;
+
+	@Test
+	public void testCreatorIsNotShared()
+	throws Exception {
+		PlayerRecord first = manager.createCreator("Frank");
+		PlayerRecord second = manager.createCreator("frank");
+		Assert.assertTrue("Each caller should get its own record.", first != second);
+		Assert.assertEquals("Records should be for the same player.", first.getId(), second.getId());
+		Assert.assertEquals("Records should have the name of the player.", "Frank", second.getName());
+		Assert.assertEquals("The player should only be created once.", 1, manager.count());
+	}
+
+	@Test
+	public void testCreatorCanBeUsedForBans()
+	throws Exception {
+		PlayerRecordManager.BannedPlayerBuilder builder = manager.getBannedPlayerBuilder();
+		builder.setPlayer("joe").setCreator("frank").setReason("testing");
+		Assert.assertTrue("Ban should be saved.", builder.save());
+		Assert.assertEquals("Ban should be counted against the creator.", 1, store.getStatistics(manager.find("frank")).getTotalCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedCreatorIsEvicted()
+	throws Exception {
+		manager.createCreator("frank");
+		for (int i = 0; i < PlayerRecordManager.MAXIMUM_CACHED_CREATORS; i++) {
+			manager.createCreator("creator" + i);
+			manager.createCreator("frank");
+		}
+		store.deletePlayers(Arrays.asList(store.findPlayer("creator0")));
+		Assert.assertNotNull("The evicted creator should be created again.", manager.createCreator("creator0"));
+		Assert.assertNotNull("The evicted creator should be stored again.", store.findPlayer("creator0"));
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		store = new MemoryBanStore();
+		manager = new PlayerRecordManager(store, MoreExecutors.sameThreadExecutor());
+	}
+
+}
@@ -48,6 +48,13 @@ public class PlayerRecordTest extends TestCase {
 		Assert.assertEquals("Name is inconsistent!", name, record.getName());
 	}
 
+	@Test
+	public void testSetNameNormalisesName()
+	throws Exception {
+		record.setName("Frank");
+		Assert.assertEquals("Normalised name should be lowercase!", "frank", record.getNormalisedName());
+	}
+
 	@Test
 	public void testSetId()
 	throws Exception {
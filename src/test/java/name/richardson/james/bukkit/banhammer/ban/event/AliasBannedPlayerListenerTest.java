@@ -9,9 +9,14 @@ import org.junit.Test;
 
 import name.richardson.james.bukkit.alias.persistence.PlayerNameRecord;
 import name.richardson.james.bukkit.alias.persistence.PlayerNameRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
+import name.richardson.james.bukkit.banhammer.ban.AliasClusterIndex;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
+import name.richardson.james.bukkit.banhammer.ban.BanRecordManager;
+import name.richardson.james.bukkit.banhammer.ban.BanWriteBehindQueue;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.CircuitBreaker;
 
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
@@ -29,7 +34,8 @@ public class AliasBannedPlayerListenerTest extends TestCase {
 		PlayerRecordManager playerRecordManager = mock(PlayerRecordManager.class, RETURNS_MOCKS);
 		playerNameRecordManager = mock(PlayerNameRecordManager.class);
 		PlayerRecord playerRecord = mock(PlayerRecord.class, RETURNS_MOCKS);
-		listener = new AliasBannedPlayerListener(plugin, pluginManager, playerRecordManager, playerNameRecordManager);
+		ActiveBanIndex activeBanIndex = new ActiveBanIndex();
+		listener = new AliasBannedPlayerListener(plugin, pluginManager, playerRecordManager, playerNameRecordManager, activeBanIndex, new AliasClusterIndex(activeBanIndex), new BanWriteBehindQueue(playerRecordManager, mock(BanRecordManager.class), activeBanIndex), new LoginCheckGuard(new CircuitBreaker(3, 30000), 500, LoginCheckGuard.FallbackPolicy.FAIL_OPEN, 4));
 	}
 
 	@Test
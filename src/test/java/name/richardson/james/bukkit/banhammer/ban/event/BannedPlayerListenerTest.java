@@ -14,16 +14,16 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import name.richardson.james.bukkit.banhammer.ban.ActiveBanIndex;
 import name.richardson.james.bukkit.banhammer.ban.BanRecord;
 import name.richardson.james.bukkit.banhammer.ban.PlayerRecord;
-import name.richardson.james.bukkit.banhammer.ban.PlayerRecordManager;
 
 import static org.mockito.Mockito.*;
 
 public class BannedPlayerListenerTest extends TestCase {
 
+	private ActiveBanIndex activeBanIndex;
 	private NormalBannedPlayerListener listener;
-	private PlayerRecordManager playerRecordManager;
 	private Server server;
 
 	@Before
@@ -32,8 +32,8 @@ public class BannedPlayerListenerTest extends TestCase {
 		Plugin plugin = mock(Plugin.class);
 		PluginManager pluginManager = mock(PluginManager.class);
 		server = mock(Server.class);
-		playerRecordManager = mock(PlayerRecordManager.class);
-		listener = new NormalBannedPlayerListener(plugin, pluginManager, server, playerRecordManager);
+		activeBanIndex = new ActiveBanIndex();
+		listener = new NormalBannedPlayerListener(plugin, pluginManager, server, activeBanIndex);
 	}
 
 	@Test
@@ -50,10 +50,9 @@ public class BannedPlayerListenerTest extends TestCase {
 	@Test
 	public void testPlayerLoginAllowed()
 	throws Exception {
-		PlayerRecord playerRecord = mock(PlayerRecord.class);
-		when(playerRecord.isBanned()).thenReturn(false);
-		when(playerRecordManager.exists("frank")).thenReturn(true);
-		when(playerRecordManager.find("frank")).thenReturn(playerRecord);
+		BanRecord banRecord = getExampleBanRecord();
+		when(banRecord.getState()).thenReturn(BanRecord.State.PARDONED);
+		activeBanIndex.put(banRecord);
 		Player player = mock(Player.class);
 		when(player.getName()).thenReturn("frank");
 		PlayerLoginEvent playerLoginEvent = new PlayerLoginEvent(player, "", null);
@@ -64,19 +63,16 @@ public class BannedPlayerListenerTest extends TestCase {
 		when(server.getOnlineMode()).thenReturn(true);
 		listener.onPlayerLogin(asyncPlayerPreLoginEvent);
 		Assert.assertEquals("Player should be allowed to login!", asyncPlayerPreLoginEvent.getLoginResult(), AsyncPlayerPreLoginEvent.Result.ALLOWED);
-		verify(playerRecord, times(2)).isBanned();
 	}
 
 	@Test
 	public void testPlayerLoginDenied()
 	throws Exception {
 		Player player = mock(Player.class);
-		PlayerRecord playerRecord = getExamplePlayerRecord();
-		when(playerRecord.isBanned()).thenReturn(true);
+		when(player.getName()).thenReturn("Frank");
 		BanRecord banRecord = getExampleBanRecord();
-		when(playerRecord.getActiveBan()).thenReturn(banRecord);
-		when(playerRecordManager.exists(anyString())).thenReturn(true);
-		when(playerRecordManager.find(anyString())).thenReturn(playerRecord);
+		when(banRecord.getState()).thenReturn(BanRecord.State.NORMAL);
+		activeBanIndex.put(banRecord);
 		PlayerLoginEvent playerLoginEvent = new PlayerLoginEvent(player, "", null);
 		AsyncPlayerPreLoginEvent asyncPlayerPreLoginEvent = new AsyncPlayerPreLoginEvent("frank", null);
 		when(server.getOnlineMode()).thenReturn(false);
@@ -85,13 +81,30 @@ public class BannedPlayerListenerTest extends TestCase {
 		when(server.getOnlineMode()).thenReturn(true);
 		listener.onPlayerLogin(asyncPlayerPreLoginEvent);
 		Assert.assertEquals("Player should not be allowed to login!", AsyncPlayerPreLoginEvent.Result.KICK_BANNED, asyncPlayerPreLoginEvent.getLoginResult());
-		verify(playerRecord, times(2)).isBanned();
+	}
+
+	@Test
+	public void testOfflineLoginUsesPreLoginDecision()
+	throws Exception {
+		Player player = mock(Player.class);
+		when(player.getName()).thenReturn("frank");
+		BanRecord banRecord = getExampleBanRecord();
+		when(banRecord.getState()).thenReturn(BanRecord.State.NORMAL);
+		activeBanIndex.put(banRecord);
+		when(server.getOnlineMode()).thenReturn(false);
+		AsyncPlayerPreLoginEvent asyncPlayerPreLoginEvent = new AsyncPlayerPreLoginEvent("frank", null);
+		listener.onPlayerLogin(asyncPlayerPreLoginEvent);
+		Assert.assertEquals("Decision should be deferred until login in offline mode!", AsyncPlayerPreLoginEvent.Result.ALLOWED, asyncPlayerPreLoginEvent.getLoginResult());
+		activeBanIndex.remove(banRecord);
+		PlayerLoginEvent playerLoginEvent = new PlayerLoginEvent(player, "", null);
+		listener.onPlayerLogin(playerLoginEvent);
+		Assert.assertEquals("Pre-login decision should be applied!", PlayerLoginEvent.Result.KICK_BANNED, playerLoginEvent.getResult());
 	}
 
 	@Test
 	public void testPlayerRecordNotFound() {
-		when(playerRecordManager.exists(anyString())).thenReturn(false);
 		Player player = mock(Player.class);
+		when(player.getName()).thenReturn("frank");
 		PlayerLoginEvent playerLoginEvent = new PlayerLoginEvent(player, "", null);
 		AsyncPlayerPreLoginEvent asyncPlayerPreLoginEvent = new AsyncPlayerPreLoginEvent("frank", null);
 		listener.onPlayerLogin(playerLoginEvent);
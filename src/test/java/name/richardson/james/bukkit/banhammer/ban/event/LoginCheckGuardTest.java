@@ -0,0 +1,227 @@
+package name.richardson.james.bukkit.banhammer.ban.event;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import name.richardson.james.bukkit.banhammer.utilities.concurrent.CircuitBreaker;
+
+public class LoginCheckGuardTest extends TestCase {
+
+	private CircuitBreaker breaker;
+	private LoginCheckGuard guard;
+
+	@Test
+	public void testCheckCompletes()
+	throws Exception {
+		Assert.assertTrue("A quick check should complete.", guard.check(new Sleep(0)));
+		Assert.assertEquals(0, breaker.getFallbackCount());
+	}
+
+	@Test
+	public void testSlowCheckRecordsFailure()
+	throws Exception {
+		Assert.assertFalse("A check over the latency budget should be abandoned.", guard.check(new Sleep(1000)));
+		Assert.assertEquals("An abandoned check should open the breaker.", CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testWaitsForAdmission()
+	throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final Thread first = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				guard.check(new Callable<Object>() {
+					@Override
+					public Object call()
+					throws Exception {
+						started.countDown();
+						Thread.sleep(50);
+						return null;
+					}
+				});
+			}
+		});
+		first.start();
+		Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+		Assert.assertTrue("A check should wait for a running check to finish.", guard.check(new Sleep(0)));
+		first.join();
+	}
+
+	@Test
+	public void testBurstDoesNotOpenBreaker()
+	throws Exception {
+		// the first check is abandoned and counts as one failure, so only skipped checks could open this breaker
+		guard.shutdown();
+		breaker = new CircuitBreaker(2, 60000);
+		guard = new LoginCheckGuard(breaker, 200, LoginCheckGuard.FallbackPolicy.FAIL_OPEN, 1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final Thread first = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				guard.check(new Callable<Object>() {
+					@Override
+					public Object call()
+					throws Exception {
+						started.countDown();
+						release.await();
+						return null;
+					}
+				});
+			}
+		});
+		first.start();
+		Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+		final AtomicInteger skipped = new AtomicInteger();
+		final Thread[] burst = new Thread[5];
+		for (int i = 0; i < burst.length; i++) {
+			burst[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					if (!guard.check(new Sleep(0))) skipped.incrementAndGet();
+				}
+			});
+			burst[i].start();
+		}
+		for (Thread thread : burst) {
+			thread.join();
+		}
+		release.countDown();
+		first.join();
+		Assert.assertEquals("Checks which could not be admitted should be skipped.", burst.length, skipped.get());
+		Assert.assertEquals("Skipped checks should not open the breaker.", CircuitBreaker.State.CLOSED, breaker.getState());
+		Assert.assertEquals("Skipped checks and the abandoned check should be counted as fallbacks.", burst.length + 1, breaker.getFallbackCount());
+	}
+
+	@Test
+	public void testBusyGuardDoesNotHoldTrial()
+	throws Exception {
+		guard.shutdown();
+		breaker = new CircuitBreaker(1, 0);
+		final GatedExecutor executor = new GatedExecutor();
+		guard = new LoginCheckGuard(breaker, 100, LoginCheckGuard.FallbackPolicy.FAIL_CLOSED, 1, executor);
+		final Thread first = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				guard.check(new Sleep(0));
+			}
+		});
+		first.start();
+		// the first check now holds the only admission
+		Assert.assertTrue(executor.entered.await(1, TimeUnit.SECONDS));
+		breaker.recordFailure();
+		Assert.assertFalse("A busy guard should skip the trial check.", guard.check(new Sleep(0)));
+		Assert.assertEquals("A skipped trial should leave the breaker open.", CircuitBreaker.State.OPEN, breaker.getState());
+		Assert.assertEquals("The skipped trial should be counted as a fallback.", 2, breaker.getFallbackCount());
+		Assert.assertTrue("The next call should be allowed as the trial.", breaker.allowRequest());
+		executor.gate.countDown();
+		first.join();
+	}
+
+	@Test
+	public void testRejectedTrialIsNotHeld()
+	throws Exception {
+		guard.shutdown();
+		breaker = new CircuitBreaker(1, 0);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		guard = new LoginCheckGuard(breaker, 100, LoginCheckGuard.FallbackPolicy.FAIL_CLOSED, 1, executor);
+		breaker.recordFailure();
+		Assert.assertFalse("A rejected check should not complete.", guard.check(new Sleep(0)));
+		Assert.assertEquals("A rejected trial should leave the breaker open.", CircuitBreaker.State.OPEN, breaker.getState());
+		Assert.assertTrue("The next call should be allowed as the trial.", breaker.allowRequest());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		breaker = new CircuitBreaker(1, 60000);
+		guard = new LoginCheckGuard(breaker, 200, LoginCheckGuard.FallbackPolicy.FAIL_OPEN, 1);
+	}
+
+	@After
+	public void tearDown()
+	throws Exception {
+		guard.shutdown();
+	}
+
+	private static final class Sleep implements Callable<Object> {
+
+		private final long time;
+
+		private Sleep(long time) {
+			this.time = time;
+		}
+
+		@Override
+		public Object call()
+		throws Exception {
+			Thread.sleep(time);
+			return null;
+		}
+
+	}
+
+	/**
+	 * Runs tasks on the submitting thread once the gate is opened.
+	 */
+	private static final class GatedExecutor extends AbstractExecutorService {
+
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch gate = new CountDownLatch(1);
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return true;
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			entered.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new RejectedExecutionException(e);
+			}
+			task.run();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return false;
+		}
+
+		@Override
+		public void shutdown() {
+			gate.countDown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			gate.countDown();
+			return Collections.emptyList();
+		}
+
+	}
+
+}
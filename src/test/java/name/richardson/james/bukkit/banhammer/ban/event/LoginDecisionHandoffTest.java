@@ -0,0 +1,47 @@
+package name.richardson.james.bukkit.banhammer.ban.event;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class LoginDecisionHandoffTest extends TestCase {
+
+	@Test
+	public void testTakeRemovesDecision()
+	throws Exception {
+		LoginDecisionHandoff handoff = new LoginDecisionHandoff();
+		handoff.put("frank", "banned");
+		Assert.assertEquals("Decision is inconsistent!", "banned", handoff.take("frank"));
+		Assert.assertNull("Decision should only be taken once!", handoff.take("frank"));
+	}
+
+	@Test
+	public void testExpiredDecisionIsIgnored()
+	throws Exception {
+		LoginDecisionHandoff handoff = new LoginDecisionHandoff(-1);
+		handoff.put("frank", LoginDecisionHandoff.ALLOWED);
+		Assert.assertNull("Expired decision should not be returned!", handoff.take("frank"));
+	}
+
+	@Test
+	public void testExpiredDecisionsAreRemovedOnPut()
+	throws Exception {
+		LoginDecisionHandoff handoff = new LoginDecisionHandoff(-1);
+		handoff.put("frank", LoginDecisionHandoff.ALLOWED);
+		handoff.put("joe", LoginDecisionHandoff.ALLOWED);
+		Assert.assertEquals("Expired decisions should have been removed!", 1, handoff.size());
+	}
+
+	@Test
+	public void testReplacedDecisionIsKept()
+	throws Exception {
+		LoginDecisionHandoff handoff = new LoginDecisionHandoff(50);
+		handoff.put("frank", LoginDecisionHandoff.ALLOWED);
+		Thread.sleep(30);
+		handoff.put("frank", "banned");
+		Thread.sleep(30);
+		handoff.put("joe", LoginDecisionHandoff.ALLOWED);
+		Assert.assertEquals("Expiry of the first decision should not remove the second!", "banned", handoff.take("frank"));
+	}
+
+}
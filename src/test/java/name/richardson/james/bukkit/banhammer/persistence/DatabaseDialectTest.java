@@ -0,0 +1,17 @@
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class DatabaseDialectTest extends TestCase {
+
+	@Test
+	public void testFromProductName()
+	throws Exception {
+		Assert.assertEquals("MySQL should be detected.", DatabaseDialect.MYSQL, DatabaseDialect.fromProductName("MySQL"));
+		Assert.assertEquals("SQLite should be detected.", DatabaseDialect.SQLITE, DatabaseDialect.fromProductName("SQLite"));
+		Assert.assertEquals("Unknown databases should use standard SQL.", DatabaseDialect.OTHER, DatabaseDialect.fromProductName("H2"));
+	}
+
+}
@@ -0,0 +1,110 @@
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.Transaction;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class GroupCommitWriterTest extends TestCase {
+
+	private Connection connection;
+	private EbeanServer database;
+	private Savepoint savepoint;
+	private Transaction transaction;
+	private GroupCommitWriter writer;
+
+	@Test
+	public void testCommitsQueuedWritesTogether()
+	throws Exception {
+		final CountDownLatch finished = new CountDownLatch(3);
+		final AtomicInteger saved = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					saved.addAndGet(writer.save(Arrays.asList(new Object()), null));
+					finished.countDown();
+				}
+			}).start();
+		}
+		Assert.assertTrue("Writes should be committed.", finished.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("Every write should be saved.", 3, saved.get());
+		verify(database, times(1)).commitTransaction();
+	}
+
+	@Test
+	public void testFailedWriteIsRolledBackAlone()
+	throws Exception {
+		final Object failing = new Object();
+		final PersistenceException exception = new PersistenceException();
+		doThrow(exception).when(database).save(failing, transaction);
+		try {
+			writer.save(Arrays.asList(failing), null);
+			Assert.fail("Write should fail with the exception it threw.");
+		} catch (PersistenceException e) {
+			Assert.assertSame("Write should fail with the exception it threw.", exception, e);
+		}
+		verify(connection).rollback(savepoint);
+		Assert.assertEquals("Later writes should still be saved.", 1, writer.save(Arrays.asList(new Object()), null));
+	}
+
+	@Test
+	public void testWritesOnCallingThreadAfterShutdown()
+	throws Exception {
+		writer.shutdown();
+		when(database.currentTransaction()).thenReturn(null);
+		when(database.beginTransaction()).thenReturn(transaction);
+		Assert.assertEquals("Write should be saved after shutdown.", 1, writer.save(Arrays.asList(new Object()), null));
+		verify(database, times(1)).commitTransaction();
+	}
+
+	@Test
+	public void testIsSupported()
+	throws Exception {
+		final DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+		when(connection.getMetaData()).thenReturn(metaData);
+		when(metaData.supportsSavepoints()).thenReturn(true);
+		Assert.assertTrue("Savepoints should be supported when one can be set.", GroupCommitWriter.isSupported(database));
+		when(connection.setSavepoint()).thenThrow(new SQLException());
+		Assert.assertFalse("Savepoints should not be supported when setting one fails.", GroupCommitWriter.isSupported(database));
+		when(metaData.supportsSavepoints()).thenReturn(false);
+		Assert.assertFalse("Savepoints should not be supported when the driver says so.", GroupCommitWriter.isSupported(database));
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		database = mock(EbeanServer.class);
+		transaction = mock(Transaction.class);
+		connection = mock(Connection.class);
+		savepoint = mock(Savepoint.class);
+		when(database.beginTransaction()).thenReturn(transaction);
+		when(database.currentTransaction()).thenReturn(transaction);
+		when(transaction.isActive()).thenReturn(true);
+		when(transaction.getConnection()).thenReturn(connection);
+		when(connection.setSavepoint()).thenReturn(savepoint);
+		writer = new GroupCommitWriter(database, 200);
+	}
+
+	@After
+	public void tearDown()
+	throws Exception {
+		writer.shutdown();
+	}
+
+}
@@ -0,0 +1,78 @@
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.SqlUpdate;
+import com.avaje.ebean.Transaction;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class MigrationRunnerTest extends TestCase {
+
+	private EbeanServer database;
+	private Migration first;
+	private SqlUpdate insert;
+	private Migration second;
+
+	@Test
+	public void testAppliesOnlyNewerMigrations()
+	throws Exception {
+		final MigrationRunner runner = new MigrationRunner(database, Arrays.asList(second, first));
+		Assert.assertEquals("Only migrations newer than the schema should be applied.", 1, runner.migrate());
+		verify(first, never()).migrate(any(SchemaEditor.class));
+		verify(second).migrate(any(SchemaEditor.class));
+		verify(insert).setParameter("version", 2);
+	}
+
+	@Test
+	public void testFailedMigrationIsNotRecorded()
+	throws Exception {
+		doThrow(new PersistenceException()).when(second).migrate(any(SchemaEditor.class));
+		final MigrationRunner runner = new MigrationRunner(database, Arrays.asList(first, second));
+		try {
+			runner.migrate();
+			Assert.fail("The failure of a migration should be rethrown.");
+		} catch (PersistenceException e) {
+			verify(insert, never()).execute();
+		}
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		database = mock(EbeanServer.class);
+		final Transaction transaction = mock(Transaction.class);
+		final Connection connection = mock(Connection.class);
+		final DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+		when(database.beginTransaction()).thenReturn(transaction);
+		when(transaction.getConnection()).thenReturn(connection);
+		when(connection.getMetaData()).thenReturn(metaData);
+		when(metaData.getDatabaseProductName()).thenReturn("SQLite");
+		// the schema version table exists and version 1 has been applied
+		final SqlQuery query = mock(SqlQuery.class);
+		final SqlRow version = mock(SqlRow.class);
+		when(database.createSqlQuery(anyString())).thenReturn(query);
+		when(query.findList()).thenReturn(Collections.<SqlRow>emptyList());
+		when(query.findUnique()).thenReturn(version);
+		when(version.getInteger("version")).thenReturn(1);
+		insert = mock(SqlUpdate.class);
+		when(database.createSqlUpdate(anyString())).thenReturn(insert);
+		when(insert.setParameter(anyString(), any())).thenReturn(insert);
+		first = mock(Migration.class);
+		when(first.getVersion()).thenReturn(1);
+		second = mock(Migration.class);
+		when(second.getVersion()).thenReturn(2);
+	}
+
+}
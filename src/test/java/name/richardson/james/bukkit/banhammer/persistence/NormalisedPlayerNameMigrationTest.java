@@ -0,0 +1,52 @@
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.util.Collections;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class NormalisedPlayerNameMigrationTest extends TestCase {
+
+	private SchemaEditor editor;
+	private NormalisedPlayerNameMigration migration;
+
+	@Test
+	public void testFinishesPartialMigration()
+	throws Exception {
+		// a previous attempt added the column but failed before the index was created
+		when(editor.columnExists("banhammer_players", "normalised_name")).thenReturn(true);
+		when(editor.uniqueIndexExists("banhammer_players", "normalised_name")).thenReturn(false);
+		migration.migrate(editor);
+		verify(editor, never()).execute(anyString());
+		verify(editor).updateInChunks("banhammer_players", "UPDATE banhammer_players SET normalised_name = LOWER(name) WHERE normalised_name IS NULL AND id BETWEEN :start AND :end");
+		verify(editor).createIndex("uq_banhammer_players_normalised_name", "banhammer_players", "normalised_name", true);
+	}
+
+	@Test
+	public void testKeepsExistingUniqueConstraint()
+	throws Exception {
+		when(editor.columnExists("banhammer_players", "normalised_name")).thenReturn(true);
+		when(editor.uniqueIndexExists("banhammer_players", "normalised_name")).thenReturn(true);
+		migration.migrate(editor);
+		verify(editor, never()).createIndex(anyString(), anyString(), anyString(), anyBoolean());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		final EbeanServer database = mock(EbeanServer.class);
+		final SqlQuery duplicates = mock(SqlQuery.class);
+		when(database.createSqlQuery(anyString())).thenReturn(duplicates);
+		when(duplicates.findList()).thenReturn(Collections.<SqlRow>emptyList());
+		editor = mock(SchemaEditor.class);
+		when(editor.getDatabase()).thenReturn(database);
+		migration = new NormalisedPlayerNameMigration();
+	}
+
+}
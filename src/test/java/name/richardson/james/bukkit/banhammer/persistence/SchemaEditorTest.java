@@ -0,0 +1,97 @@
+package name.richardson.james.bukkit.banhammer.persistence;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.SqlUpdate;
+import com.avaje.ebean.Transaction;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class SchemaEditorTest extends TestCase {
+
+	private EbeanServer database;
+	private SchemaEditor editor;
+	private DatabaseMetaData metaData;
+	private ResultSet indexes;
+
+	@Test
+	public void testCreateIndexSkipsExistingIndex()
+	throws Exception {
+		when(indexes.next()).thenReturn(true, false);
+		when(indexes.getString("INDEX_NAME")).thenReturn("IX_TEST");
+		editor.createIndex("ix_test", "banhammer_bans", "state", false);
+		verify(database, never()).createSqlUpdate(anyString());
+	}
+
+	@Test
+	public void testCreateIndex()
+	throws Exception {
+		final SqlUpdate update = mock(SqlUpdate.class);
+		when(indexes.next()).thenReturn(false);
+		when(database.createSqlUpdate("CREATE INDEX ix_test ON banhammer_bans (state)")).thenReturn(update);
+		editor.createIndex("ix_test", "banhammer_bans", "state", false);
+		verify(update).execute();
+	}
+
+	@Test
+	public void testUniqueIndexExists()
+	throws Exception {
+		when(metaData.getIndexInfo(null, null, "banhammer_players", true, true)).thenReturn(indexes);
+		when(indexes.next()).thenReturn(true, false);
+		when(indexes.getString("INDEX_NAME")).thenReturn("uq_banhammer_players_1");
+		when(indexes.getString("COLUMN_NAME")).thenReturn("normalised_name");
+		Assert.assertTrue("A unique index on the column should be found whatever it is called.", editor.uniqueIndexExists("banhammer_players", "normalised_name"));
+	}
+
+	@Test
+	public void testUniqueIndexOverSeveralColumnsDoesNotCount()
+	throws Exception {
+		when(metaData.getIndexInfo(null, null, "banhammer_players", true, true)).thenReturn(indexes);
+		when(indexes.next()).thenReturn(true, true, false);
+		when(indexes.getString("INDEX_NAME")).thenReturn("uq_banhammer_players_1");
+		when(indexes.getString("COLUMN_NAME")).thenReturn("normalised_name", "name");
+		Assert.assertFalse("An index over several columns does not make one of them unique.", editor.uniqueIndexExists("banhammer_players", "normalised_name"));
+	}
+
+	@Test
+	public void testUpdateInChunks()
+	throws Exception {
+		final SqlQuery query = mock(SqlQuery.class);
+		final SqlRow bounds = mock(SqlRow.class);
+		final SqlUpdate update = mock(SqlUpdate.class);
+		when(database.createSqlQuery(anyString())).thenReturn(query);
+		when(query.findUnique()).thenReturn(bounds);
+		when(bounds.getLong("min_id")).thenReturn(1L);
+		when(bounds.getLong("max_id")).thenReturn(12000L);
+		when(database.createSqlUpdate(anyString())).thenReturn(update);
+		when(update.setParameter(anyString(), any())).thenReturn(update);
+		when(update.execute()).thenReturn(10);
+		Assert.assertEquals("Every chunk should be counted.", 30, editor.updateInChunks("banhammer_players", "UPDATE"));
+		verify(update, times(3)).execute();
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		database = mock(EbeanServer.class);
+		final Transaction transaction = mock(Transaction.class);
+		final Connection connection = mock(Connection.class);
+		metaData = mock(DatabaseMetaData.class);
+		indexes = mock(ResultSet.class);
+		when(database.beginTransaction()).thenReturn(transaction);
+		when(transaction.getConnection()).thenReturn(connection);
+		when(connection.getMetaData()).thenReturn(metaData);
+		when(metaData.getIndexInfo(null, null, "banhammer_bans", false, true)).thenReturn(indexes);
+		editor = new SchemaEditor(database, DatabaseDialect.SQLITE);
+	}
+
+}
@@ -0,0 +1,58 @@
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class CircuitBreakerTest extends TestCase {
+
+	@Test
+	public void testOpensAfterFailureThreshold()
+	throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+		breaker.recordFailure();
+		Assert.assertTrue("Breaker should still allow requests.", breaker.allowRequest());
+		breaker.recordFailure();
+		Assert.assertEquals("Breaker should have opened.", CircuitBreaker.State.OPEN, breaker.getState());
+		Assert.assertFalse("Breaker should refuse requests.", breaker.allowRequest());
+		Assert.assertEquals("Every failure and refusal should use a fallback.", 3, breaker.getFallbackCount());
+		Assert.assertEquals("Breaker should have opened once.", 1, breaker.getTripCount());
+	}
+
+	@Test
+	public void testSuccessResetsFailures()
+	throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		Assert.assertEquals("Failures in a row should be reset by a success.", CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testAllowsSingleTrialRequest()
+	throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, 0);
+		breaker.recordFailure();
+		Assert.assertTrue("Breaker should allow a trial request.", breaker.allowRequest());
+		Assert.assertFalse("Breaker should only allow one trial request.", breaker.allowRequest());
+		breaker.recordFailure();
+		Assert.assertEquals("Failed trial should open the breaker again.", CircuitBreaker.State.OPEN, breaker.getState());
+		Assert.assertTrue("Breaker should allow another trial request.", breaker.allowRequest());
+		breaker.recordSuccess();
+		Assert.assertEquals("Successful trial should close the breaker.", CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testSkippedTrialReopens()
+	throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(1, 0);
+		breaker.recordFailure();
+		Assert.assertTrue("Breaker should allow a trial request.", breaker.allowRequest());
+		breaker.recordSkipped();
+		Assert.assertEquals("Skipped trial should open the breaker again.", CircuitBreaker.State.OPEN, breaker.getState());
+		Assert.assertEquals("Skipped trial should not count as a trip.", 1, breaker.getTripCount());
+		Assert.assertTrue("Breaker should allow another trial request.", breaker.allowRequest());
+	}
+
+}
@@ -0,0 +1,154 @@
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import name.richardson.james.bukkit.banhammer.ban.event.LoginCheckGuard;
+
+/**
+ * Compares the platform and virtual thread modes of {@link DatabaseExecutor} under a burst of blocking lookups.
+ * <p/>
+ * Each lookup holds a connection from a simulated pool while it sleeps for the query latency, much like a login
+ * check blocked in JDBC. The benchmark reports how long the burst took, how many lookups were rejected and the
+ * peak number of live platform threads. It then sends a burst of concurrent logins through {@link LoginCheckGuard}
+ * as BanHammer builds it in each mode with the default configuration, reporting how many logins were checked and whether the circuit breaker
+ * opened. Virtual mode is skipped on runtimes which do not support it.
+ * <p/>
+ * Usage: DatabaseExecutorBenchmark [lookups] [latency in ms] [connections] [logins]
+ */
+public final class DatabaseExecutorBenchmark {
+
+	private DatabaseExecutorBenchmark() {}
+
+	public static void main(String[] arguments)
+	throws Exception {
+		final int lookups = (arguments.length > 0) ? Integer.parseInt(arguments[0]) : 2000;
+		final long latency = (arguments.length > 1) ? Long.parseLong(arguments[1]) : 20;
+		final int connections = (arguments.length > 2) ? Integer.parseInt(arguments[2]) : 10;
+		final int logins = (arguments.length > 3) ? Integer.parseInt(arguments[3]) : 300;
+		System.out.println("Running " + lookups + " lookups of " + latency + "ms with " + connections + " connections.");
+		// warm up both modes before measuring them
+		run(DatabaseExecutor.Mode.PLATFORM, lookups / 10, latency, connections);
+		run(DatabaseExecutor.Mode.PLATFORM, lookups, latency, connections);
+		if (VirtualThreads.isSupported()) {
+			run(DatabaseExecutor.Mode.VIRTUAL, lookups / 10, latency, connections);
+			run(DatabaseExecutor.Mode.VIRTUAL, lookups, latency, connections);
+		} else {
+			System.out.println("VIRTUAL: not supported by this runtime.");
+		}
+		System.out.println("Sending a burst of " + logins + " logins.");
+		login(DatabaseExecutor.Mode.PLATFORM, logins, latency, connections);
+		if (VirtualThreads.isSupported()) {
+			login(DatabaseExecutor.Mode.VIRTUAL, logins, latency, connections);
+		}
+	}
+
+	/**
+	 * Create the login check guard which BanHammer creates for a database executor, using the default configuration.
+	 */
+	private static LoginCheckGuard createLoginCheckGuard(DatabaseExecutor executor) {
+		final CircuitBreaker circuitBreaker = new CircuitBreaker(3, 30000);
+		if (executor.getMode() == DatabaseExecutor.Mode.VIRTUAL) {
+			return new LoginCheckGuard(circuitBreaker, 500, LoginCheckGuard.FallbackPolicy.FAIL_OPEN, executor.getThreads(), VirtualThreads.newThreadPerTaskExecutor());
+		} else {
+			return new LoginCheckGuard(circuitBreaker, 500, LoginCheckGuard.FallbackPolicy.FAIL_OPEN, 4);
+		}
+	}
+
+	/**
+	 * Run a login check for each of a burst of logins at once, each on its own thread as the server does.
+	 */
+	private static void login(DatabaseExecutor.Mode mode, int logins, final long latency, int connections)
+	throws InterruptedException {
+		// in virtual mode BanHammer sizes the database executor from the connection pool
+		final DatabaseExecutor executor = new DatabaseExecutor(mode, (mode == DatabaseExecutor.Mode.VIRTUAL) ? connections : 2, logins, new MainThreadExecutor(TimeUnit.MILLISECONDS.toNanos(5)));
+		final LoginCheckGuard guard = createLoginCheckGuard(executor);
+		final Semaphore pool = new Semaphore(connections);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(logins);
+		final AtomicInteger checked = new AtomicInteger();
+		final Callable<Object> check = new Callable<Object>() {
+			@Override
+			public Object call()
+			throws Exception {
+				pool.acquire();
+				try {
+					Thread.sleep(latency);
+				} finally {
+					pool.release();
+				}
+				return null;
+			}
+		};
+		for (int i = 0; i < logins; i++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						if (guard.check(check)) checked.incrementAndGet();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						finished.countDown();
+					}
+				}
+			}).start();
+		}
+		final long started = System.nanoTime();
+		start.countDown();
+		finished.await();
+		final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		guard.shutdown();
+		executor.shutdown();
+		System.out.println(mode + ": " + checked.get() + " of " + logins + " logins checked in " + elapsed + "ms, breaker " + guard.getCircuitBreaker().getState() + ".");
+	}
+
+	private static void run(DatabaseExecutor.Mode mode, int lookups, final long latency, int connections)
+	throws InterruptedException {
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final Semaphore pool = new Semaphore(connections);
+		final CountDownLatch finished = new CountDownLatch(lookups);
+		final AtomicInteger rejected = new AtomicInteger();
+		final MainThreadExecutor mainThreadExecutor = new MainThreadExecutor(TimeUnit.MILLISECONDS.toNanos(5));
+		final DatabaseExecutor executor = new DatabaseExecutor(mode, connections, lookups, mainThreadExecutor);
+		threads.resetPeakThreadCount();
+		final long started = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			executor.submit(new DatabaseTask<Object>() {
+				@Override
+				public Object call()
+				throws Exception {
+					pool.acquire();
+					try {
+						Thread.sleep(latency);
+					} finally {
+						pool.release();
+					}
+					return null;
+				}
+
+				@Override
+				public void complete(Object result) {
+					finished.countDown();
+				}
+
+				@Override
+				public void fail(Exception exception) {
+					rejected.incrementAndGet();
+					finished.countDown();
+				}
+			});
+		}
+		while (!finished.await(1, TimeUnit.MILLISECONDS)) mainThreadExecutor.run();
+		final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		executor.shutdown();
+		System.out.println(mode + ": " + lookups + " lookups in " + elapsed + "ms, " + rejected.get() + " rejected, peak platform threads " + threads.getPeakThreadCount() + ".");
+	}
+
+}
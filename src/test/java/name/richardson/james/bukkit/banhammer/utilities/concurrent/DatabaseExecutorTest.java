@@ -0,0 +1,173 @@
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatabaseExecutorTest extends TestCase {
+
+	private DatabaseExecutor executor;
+	private MainThreadExecutor mainThreadExecutor;
+
+	@Test
+	public void testCompletesOnMainThread()
+	throws Exception {
+		final AtomicReference<String> result = new AtomicReference<String>();
+		final CountDownLatch called = new CountDownLatch(1);
+		executor.submit(new DatabaseTask<String>() {
+			@Override
+			public String call() {
+				called.countDown();
+				return "banned";
+			}
+
+			@Override
+			public void complete(String value) {
+				result.set(value);
+			}
+
+			@Override
+			public void fail(Exception exception) {
+				Assert.fail("Task should not fail.");
+			}
+		});
+		Assert.assertTrue("Task should be called on a database thread.", called.await(5, TimeUnit.SECONDS));
+		awaitMainThreadTask();
+		Assert.assertNull("Task should not complete until the main thread runs.", result.get());
+		mainThreadExecutor.run();
+		Assert.assertEquals("Task should complete when the main thread runs.", "banned", result.get());
+	}
+
+	@Test
+	public void testFailsOnMainThread()
+	throws Exception {
+		final AtomicReference<Exception> result = new AtomicReference<Exception>();
+		final IllegalStateException exception = new IllegalStateException();
+		executor.submit(new DatabaseTask<Object>() {
+			@Override
+			public Object call() {
+				throw exception;
+			}
+
+			@Override
+			public void complete(Object value) {
+				Assert.fail("Task should not complete.");
+			}
+
+			@Override
+			public void fail(Exception e) {
+				result.set(e);
+			}
+		});
+		awaitMainThreadTask();
+		mainThreadExecutor.run();
+		Assert.assertSame("Task should fail with the exception it threw.", exception, result.get());
+	}
+
+	@Test
+	public void testCallbackRunsOnMainThread()
+	throws Exception {
+		final AtomicReference<Integer> result = new AtomicReference<Integer>();
+		final ListenableFuture<Integer> future = executor.getExecutorService().submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return 3;
+			}
+		});
+		executor.onMainThread(future, new FutureCallback<Integer>() {
+			@Override
+			public void onSuccess(Integer value) {
+				result.set(value);
+			}
+
+			@Override
+			public void onFailure(Throwable throwable) {
+				Assert.fail("Future should not fail.");
+			}
+		});
+		future.get(5, TimeUnit.SECONDS);
+		awaitMainThreadTask();
+		Assert.assertNull("Callback should not run until the main thread runs.", result.get());
+		mainThreadExecutor.run();
+		Assert.assertEquals("Callback should run when the main thread runs.", Integer.valueOf(3), result.get());
+	}
+
+	@Test
+	public void testShutdownLeavesTasksToDrain()
+	throws Exception {
+		final AtomicReference<String> result = new AtomicReference<String>();
+		for (int i = 0; i < 2; i++) {
+			executor.submit(new DatabaseTask<String>() {
+				@Override
+				public String call() {
+					return "banned";
+				}
+
+				@Override
+				public void complete(String value) {
+					result.set(value);
+				}
+
+				@Override
+				public void fail(Exception exception) {
+					Assert.fail("Task should not fail.");
+				}
+			});
+		}
+		executor.shutdown();
+		Assert.assertNull("Task should not complete until the main thread runs.", result.get());
+		Assert.assertEquals("Every finished task should be completed.", 2, mainThreadExecutor.drain());
+		Assert.assertEquals("Task should complete when drained.", "banned", result.get());
+	}
+
+	@Test
+	public void testRunsAtLeastOneTaskEachTick()
+	throws Exception {
+		final MainThreadExecutor executor = new MainThreadExecutor(1);
+		final Runnable slow = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		executor.execute(slow);
+		executor.execute(slow);
+		executor.run();
+		Assert.assertEquals("Tasks over the budget should wait for the next tick.", 1, executor.getQueueSize());
+		executor.run();
+		Assert.assertEquals("The next tick should run the remaining task.", 0, executor.getQueueSize());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		mainThreadExecutor = new MainThreadExecutor(TimeUnit.MILLISECONDS.toNanos(5));
+		executor = new DatabaseExecutor(1, 1, mainThreadExecutor);
+	}
+
+	@After
+	public void tearDown()
+	throws Exception {
+		executor.shutdown();
+	}
+
+	private void awaitMainThreadTask()
+	throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (mainThreadExecutor.getQueueSize() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+	}
+
+}
@@ -0,0 +1,91 @@
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SemaphoreExecutorServiceTest extends TestCase {
+
+	private ExecutorService executor;
+	private SemaphoreExecutorService semaphoreExecutor;
+
+	@Test
+	public void testLimitsConcurrentTasks()
+	throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(3);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maximum = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			semaphoreExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					final int now = running.incrementAndGet();
+					if (now > maximum.get()) maximum.set(now);
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					finished.countDown();
+				}
+			});
+		}
+		Thread.sleep(50);
+		Assert.assertEquals("Only two tasks should run at the same time.", 2, running.get());
+		release.countDown();
+		Assert.assertTrue("Waiting task should run once a permit is released.", finished.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("Only two tasks should have run at the same time.", 2, maximum.get());
+	}
+
+	@Test
+	public void testRejectsWhenQueueIsFull()
+	throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final Runnable blocked = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		for (int i = 0; i < 3; i++) semaphoreExecutor.execute(blocked);
+		try {
+			semaphoreExecutor.execute(blocked);
+			Assert.fail("Task should be rejected when too many are waiting.");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		release.countDown();
+		semaphoreExecutor.shutdown();
+		Assert.assertTrue("Tasks should finish once released.", semaphoreExecutor.awaitTermination(5, TimeUnit.SECONDS));
+		Assert.assertEquals("Every permit should be released.", 2, semaphoreExecutor.getAvailablePermits());
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		executor = Executors.newCachedThreadPool();
+		semaphoreExecutor = new SemaphoreExecutorService(executor, 2, 1);
+	}
+
+	@After
+	public void tearDown()
+	throws Exception {
+		executor.shutdownNow();
+	}
+
+}
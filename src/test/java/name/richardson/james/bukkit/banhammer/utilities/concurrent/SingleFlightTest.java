@@ -0,0 +1,93 @@
+package name.richardson.james.bukkit.banhammer.utilities.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SingleFlightTest extends TestCase {
+
+	private SingleFlight<String, Integer> singleFlight;
+
+	@Test
+	public void testConcurrentCallsAreCoalesced()
+	throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Integer[] results = new Integer[2];
+		final Callable<Integer> callable = new Callable<Integer>() {
+			@Override
+			public Integer call()
+			throws Exception {
+				started.countDown();
+				release.await();
+				return calls.incrementAndGet();
+			}
+		};
+		Thread first = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				results[0] = singleFlight.execute("frank", callable);
+			}
+		});
+		first.start();
+		started.await(5, TimeUnit.SECONDS);
+		Thread second = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				results[1] = singleFlight.execute("frank", callable);
+			}
+		});
+		second.start();
+		while (second.getState() != Thread.State.WAITING && second.isAlive()) Thread.sleep(1);
+		release.countDown();
+		first.join(5000);
+		second.join(5000);
+		Assert.assertEquals("Callable should only have been called once.", 1, calls.get());
+		Assert.assertEquals("Both callers should share the result.", results[0], results[1]);
+		Assert.assertEquals("Completed calls should be removed.", 0, singleFlight.size());
+	}
+
+	@Test
+	public void testSequentialCallsAreNotCoalesced()
+	throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final Callable<Integer> callable = new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return calls.incrementAndGet();
+			}
+		};
+		singleFlight.execute("frank", callable);
+		Assert.assertEquals("A new call should be made once the previous one has finished.", Integer.valueOf(2), singleFlight.execute("frank", callable));
+	}
+
+	@Test
+	public void testExceptionIsRethrown()
+	throws Exception {
+		try {
+			singleFlight.execute("frank", new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					throw new IllegalArgumentException();
+				}
+			});
+			Assert.fail("Exception should have been rethrown.");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("Failed calls should be removed.", 0, singleFlight.size());
+		}
+	}
+
+	@Before
+	public void setUp()
+	throws Exception {
+		singleFlight = new SingleFlight<String, Integer>();
+	}
+
+}